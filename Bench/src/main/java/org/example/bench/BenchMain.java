@@ -0,0 +1,229 @@
+package org.example.bench;
+
+import org.HdrHistogram.Histogram;
+import org.example.client.network.UDPClient;
+import org.example.common.command.InfoCommand;
+import org.example.common.data.Person;
+import org.example.server.manager.CollectionManager;
+import org.example.server.manager.FileManager;
+import org.example.server.manager.ServerCommandManager;
+import org.example.server.network.ExecutionMode;
+import org.example.server.network.UDPServer;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/* Load generator for the UDP server.
+ Starts a server in this JVM on a free loopback port (or targets BENCH_SERVER=host:port), lets BENCH_CLIENTS
+ simulated clients send a weighted mix of commands for BENCH_DURATION_SECONDS, and prints throughput and
+ latency percentiles per command. The in-process server reads SERVER_REACTORS, SERVER_EXECUTOR and
+ SERVER_MAX_CONCURRENCY like ServerMain does, so configurations can be compared run against run.
+ */
+public class BenchMain {
+    private static final int DEFAULT_CLIENTS = 8;
+    private static final int DEFAULT_DURATION_SECONDS = 10;
+    private static final int DEFAULT_WARMUP_SECONDS = 2;
+    private static final int DEFAULT_PREFILL = 1000;
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        int clients = envInt("BENCH_CLIENTS", DEFAULT_CLIENTS, 1);
+        int durationSeconds = envInt("BENCH_DURATION_SECONDS", DEFAULT_DURATION_SECONDS, 1);
+        int warmupSeconds = envInt("BENCH_WARMUP_SECONDS", DEFAULT_WARMUP_SECONDS, 0);
+        int ratePerClient = envInt("BENCH_RATE", 0, 0); // Commands per second per client, 0 for a closed loop
+        String histogramFile = System.getenv("BENCH_HISTOGRAM_FILE");
+        String target = System.getenv("BENCH_SERVER");
+
+        CommandMix mix;
+        try {
+            String mixEnv = System.getenv("BENCH_MIX");
+            mix = CommandMix.parse(mixEnv == null || mixEnv.isBlank() ? CommandMix.DEFAULT_MIX : mixEnv);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid BENCH_MIX: " + e.getMessage());
+            return;
+        }
+
+        String host = "localhost";
+        int port;
+        UDPServer server = null;
+        CollectionManager collectionManager = null; // Of the in-process server
+        try {
+            if (target != null && !target.isBlank()) {
+                String[] parts = target.trim().split(":");
+                if (parts.length != 2) {
+                    System.err.println("BENCH_SERVER must be host:port, got " + target);
+                    return;
+                }
+                host = parts[0];
+                port = Integer.parseInt(parts[1]);
+            } else {
+                port = freePort();
+                collectionManager = new CollectionManager();
+                server = startServer(port, envInt("BENCH_PREFILL", DEFAULT_PREFILL, 0), collectionManager);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid port in BENCH_SERVER: " + target);
+            return;
+        } catch (IOException e) {
+            System.err.println("Error starting the server: " + e.getMessage());
+            return;
+        }
+
+        List<UDPClient> udpClients = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                udpClients.add(new UDPClient(host, port, 1));
+            }
+            // The first answer also tells us the server is up: requests are retransmitted until it answers
+            udpClients.get(0).sendAndReceive(new InfoCommand(""));
+
+            System.out.println("Benchmarking " + host + ":" + port + (server != null ? " (in-process)" : "")
+                    + " with " + clients + " clients for " + durationSeconds + " s after " + warmupSeconds + " s warmup"
+                    + (ratePerClient > 0 ? ", " + ratePerClient + " commands/s per client" : ", closed loop"));
+            System.out.println("Mix: " + mix);
+
+            long start = System.nanoTime();
+            long warmupEnd = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long interval = ratePerClient > 0 ? TimeUnit.SECONDS.toNanos(1) / ratePerClient : 0;
+            List<LoadClient> loadClients = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                LoadClient loadClient = new LoadClient(udpClients.get(i), mix, SEED + i, warmupEnd, end, interval);
+                Thread thread = new Thread(loadClient, "bench-client-" + i);
+                loadClients.add(loadClient);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            report(loadClients, durationSeconds, histogramFile);
+            if (collectionManager != null && Boolean.parseBoolean(System.getenv("SERVER_SELF_CHECK"))) {
+                reportSelfCheck(collectionManager);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Benchmark interrupted.");
+        } finally {
+            for (UDPClient udpClient : udpClients) {
+                udpClient.close();
+            }
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static UDPServer startServer(int port, int prefill, CollectionManager collectionManager) throws IOException {
+        collectionManager.setSelfCheck(Boolean.parseBoolean(System.getenv("SERVER_SELF_CHECK")));
+        Random random = new Random(SEED);
+        for (int i = 0; i < prefill; i++) {
+            Person person = CommandMix.randomPerson(random);
+            person.setId(collectionManager.generateId());
+            collectionManager.addPerson(person);
+        }
+        ServerCommandManager commandManager = new ServerCommandManager(collectionManager, new FileManager(collectionManager));
+
+        ExecutionMode executionMode = ExecutionMode.FIXED_POOL;
+        try {
+            executionMode = ExecutionMode.fromString(System.getenv("SERVER_EXECUTOR"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ". Using the fixed thread pool.");
+        }
+        UDPServer server = new UDPServer(port, commandManager, envInt("SERVER_REACTORS", 1, 1), executionMode,
+                envInt("SERVER_MAX_CONCURRENCY", executionMode.defaultConcurrency(), 1));
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.err.println("Error running the in-process server: " + e.getMessage());
+            }
+        }, "bench-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        return server;
+    }
+
+    // With SERVER_SELF_CHECK=true every mutation of the run was checked; a final recount covers the end state too.
+    private static void reportSelfCheck(CollectionManager collectionManager) {
+        long failures = collectionManager.getSelfCheckFailures();
+        try {
+            collectionManager.verifyAggregates();
+            System.out.println("Self-check: " + (failures == 0 ? "aggregates consistent" : failures + " mutations failed"));
+        } catch (IllegalStateException e) {
+            System.out.println("Self-check: " + failures + " mutations failed, final recount: " + e.getMessage());
+        }
+    }
+
+    private static void report(List<LoadClient> loadClients, int durationSeconds, String histogramFile) {
+        Map<String, Histogram> latencies = new TreeMap<>();
+        Map<String, Long> errors = new TreeMap<>();
+        Histogram total = LoadClient.newHistogram();
+        long totalErrors = 0;
+        for (LoadClient loadClient : loadClients) {
+            for (Map.Entry<String, Histogram> entry : loadClient.getLatencies().entrySet()) {
+                latencies.computeIfAbsent(entry.getKey(), key -> LoadClient.newHistogram()).add(entry.getValue());
+                total.add(entry.getValue());
+            }
+            for (Map.Entry<String, Long> entry : loadClient.getErrors().entrySet()) {
+                errors.merge(entry.getKey(), entry.getValue(), Long::sum);
+                totalErrors += entry.getValue();
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-18s %9s %7s %10s %10s %10s %10s %10s",
+                "command", "count", "errors", "ops/s", "p50 us", "p99 us", "p999 us", "max us"));
+        for (Map.Entry<String, Histogram> entry : latencies.entrySet()) {
+            printRow(entry.getKey(), entry.getValue(), errors.getOrDefault(entry.getKey(), 0L), durationSeconds);
+        }
+        printRow("total", total, totalErrors, durationSeconds);
+
+        if (histogramFile != null && !histogramFile.isBlank()) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(histogramFile))) {
+                total.outputPercentileDistribution(out, 1000.0); // In milliseconds, as HdrHistogram's plotter expects
+                System.out.println("Percentile distribution written to " + histogramFile);
+            } catch (IOException e) {
+                System.err.println("Error writing " + histogramFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, long errors, int durationSeconds) {
+        System.out.println(String.format("%-18s %9d %7d %10.1f %10d %10d %10d %10d",
+                name, histogram.getTotalCount(), errors, (double) histogram.getTotalCount() / durationSeconds,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue()));
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int envInt(String name, int defaultValue, int min) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(min, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " value: " + value + ". Using " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.bench;
+
+import org.example.common.command.*;
+import org.example.common.data.Coordinates;
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Weighted mix of commands the simulated clients send, parsed from a spec like "add=10,info=40,show_page=5".
+// "show" asks for the whole collection, "show_page" for its first page.
+public class CommandMix {
+    public static final String DEFAULT_MIX =
+            "add=10,info=30,count_by_location=25,average_of_height=15,max_by_id=10,show_page=9,show=1";
+    private static final Set<String> COMMANDS = Set.of(
+            "add", "show", "show_page", "info", "count_by_location", "average_of_height", "max_by_id", "help", "history");
+    private static final int SHOW_PAGE_SIZE = 100;
+    private static final String[] LOCATION_NAMES = {"Moscow", "Berlin", "Rome", "Bangkok", "Tokyo"};
+    private static final int LOCATION_GRID = 4; // Locations sit on a small grid so that count_by_location finds matches
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    public static CommandMix parse(String spec) {
+        CommandMix mix = new CommandMix();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            String name = parts[0].trim().toLowerCase();
+            if (!COMMANDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown command in mix: '" + name + "'. Known: " + COMMANDS);
+            }
+            int weight;
+            try {
+                weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight for '" + name + "': " + parts[1]);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight for '" + name + "' must not be negative.");
+            }
+            if (weight > 0) {
+                mix.totalWeight += weight;
+                mix.names.add(name);
+                mix.cumulativeWeights.add(mix.totalWeight);
+            }
+        }
+        if (mix.totalWeight == 0) {
+            throw new IllegalArgumentException("The command mix is empty: " + spec);
+        }
+        return mix;
+    }
+
+    public String pick(Random random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; i < names.size(); i++) {
+            if (value < cumulativeWeights.get(i)) {
+                return names.get(i);
+            }
+        }
+        throw new IllegalStateException("Weights do not add up.");
+    }
+
+    public Command create(String name, Random random) {
+        switch (name) {
+            case "add":
+                return new AddCommand("", randomPerson(random));
+            case "show":
+                return new ShowCommand("");
+            case "show_page":
+                return new ShowCommand(SHOW_PAGE_SIZE, null);
+            case "info":
+                return new InfoCommand("");
+            case "count_by_location":
+                return new CountByLocationCommand(random.nextInt(LOCATION_GRID) + " " + random.nextInt(LOCATION_GRID) + " "
+                        + LOCATION_NAMES[random.nextInt(LOCATION_NAMES.length)]);
+            case "average_of_height":
+                return new AverageOfHeightCommand("");
+            case "max_by_id":
+                return new MaxByIdCommand("");
+            case "help":
+                return new HelpCommand("");
+            case "history":
+                return new HistoryCommand("");
+            default:
+                throw new IllegalArgumentException("Unknown command: " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(names.get(i)).append('=').append(cumulativeWeights.get(i) - previous);
+            previous = cumulativeWeights.get(i);
+        }
+        return builder.toString();
+    }
+
+    // The collection is ordered (and deduplicated) by height, so heights are drawn from a wide continuous range.
+    public static Person randomPerson(Random random) {
+        String locationName = LOCATION_NAMES[random.nextInt(LOCATION_NAMES.length)];
+        return new Person(null, "bench" + random.nextInt(1_000_000),
+                new Coordinates(random.nextInt(600), random.nextDouble() * 100),
+                LocalDateTime.now(),
+                50.0 + random.nextDouble() * 200.0,
+                EyeColor.values()[random.nextInt(EyeColor.values().length)],
+                HairColor.values()[random.nextInt(HairColor.values().length)],
+                Country.values()[random.nextInt(Country.values().length)],
+                new Location(random.nextInt(LOCATION_GRID), (float) random.nextInt(LOCATION_GRID), locationName));
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.bench;
+
+import org.HdrHistogram.Histogram;
+import org.example.client.network.UDPClient;
+import org.example.common.command.Command;
+import org.example.common.response.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+// One simulated user: its own UDPClient (so its own socket and admission bucket on the server),
+// sending one command at a time until the run ends.
+// Closed loop by default. With a rate, commands are scheduled at fixed intervals and latency is measured from the
+// scheduled time, so a stalled server shows up in the histogram instead of just slowing the client down.
+class LoadClient implements Runnable {
+    static final long MAX_LATENCY_MICROS = 60_000_000L;
+
+    private final UDPClient client;
+    private final CommandMix mix;
+    private final Random random;
+    private final long warmupEndNanos;
+    private final long endNanos;
+    private final long intervalNanos; // 0 for a closed loop
+    private final Map<String, Histogram> latencies = new HashMap<>();
+    private final Map<String, Long> errors = new HashMap<>();
+
+    LoadClient(UDPClient client, CommandMix mix, long seed, long warmupEndNanos, long endNanos, long intervalNanos) {
+        this.client = client;
+        this.mix = mix;
+        this.random = new Random(seed);
+        this.warmupEndNanos = warmupEndNanos;
+        this.endNanos = endNanos;
+        this.intervalNanos = intervalNanos;
+    }
+
+    @Override
+    public void run() {
+        long nextSend = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            long intended = intervalNanos > 0 ? nextSend : System.nanoTime();
+            if (intended >= endNanos) {
+                break;
+            }
+            if (intervalNanos > 0) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                nextSend += intervalNanos;
+            }
+
+            String name = mix.pick(random);
+            Command command = mix.create(name, random);
+            boolean success;
+            try {
+                Response response = client.sendAndReceive(command);
+                success = response != null && response.isSuccess();
+            } catch (IOException | ClassNotFoundException e) {
+                success = false;
+            }
+            long latencyMicros = (System.nanoTime() - intended) / 1000;
+            if (intended >= warmupEndNanos) {
+                record(name, latencyMicros, success);
+            }
+        }
+    }
+
+    private void record(String name, long latencyMicros, boolean success) {
+        latencies.computeIfAbsent(name, key -> newHistogram()).recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+        if (!success) {
+            errors.merge(name, 1L, Long::sum);
+        }
+    }
+
+    static Histogram newHistogram() {
+        return new Histogram(MAX_LATENCY_MICROS, 3);
+    }
+
+    // Read after the thread has been joined
+    Map<String, Histogram> getLatencies() {
+        return latencies;
+    }
+
+    Map<String, Long> getErrors() {
+        return errors;
+    }
+}
@@ -1,47 +1,103 @@
 package org.example.client;
 
+import org.example.client.network.CommandClient;
+import org.example.client.network.FailoverClient;
+import org.example.client.network.ShardedClient;
 import org.example.client.network.UDPClient;
 import org.example.client.util.CommandParser;
 import org.example.client.util.ConsoleIOService;
 import org.example.client.util.IOService;
+import org.example.common.codec.WireFormat;
 import org.example.common.command.*;
 import org.example.common.data.Person;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
 import org.example.common.response.Response;
 
 import java.io.IOException;
 import java.net.PortUnreachableException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 public class ClientMain {
     private static final String DEFAULT_SERVER_HOST = "localhost";
     private static final int DEFAULT_SERVER_PORT = 25565;
+    private static final int SHOW_PAGE_SIZE = 500; // Persons per page when a plain 'show' walks the collection
 
     public static void main(String[] args) {
-        String serverHost = DEFAULT_SERVER_HOST;
-        int serverPort = DEFAULT_SERVER_PORT;
+        List<String> servers = new ArrayList<>();
 
-        // Parse command line arguments for server host and port
-        if (args.length == 2) {
-            serverHost = args[0];
+        // Parse command line arguments: 'host port', or one or more 'host:port' of servers with the same collection
+        if (args.length == 2 && !args[0].contains(":") && !args[1].contains(":")) {
+            int serverPort = DEFAULT_SERVER_PORT;
             try {
                 serverPort = Integer.parseInt(args[1]);
             } catch (NumberFormatException e) {
                 System.err.println("Invalid port number format. Using default port " + DEFAULT_SERVER_PORT);
             }
+            servers.add(args[0] + ":" + serverPort);
+        } else if (args.length > 0 && Arrays.stream(args).allMatch(arg -> arg.contains(":"))) {
+            servers.addAll(Arrays.asList(args));
         } else if (args.length > 0) {
-            System.err.println("Usage: java -jar client.jar [server_host] [server_port]");
+            System.err.println("Usage: java -jar client.jar [server_host server_port | host:port [host:port ...]]");
             System.err.println("Using default server: " + DEFAULT_SERVER_HOST + ":" + DEFAULT_SERVER_PORT);
         }
+        if (servers.isEmpty()) {
+            servers.add(DEFAULT_SERVER_HOST + ":" + DEFAULT_SERVER_PORT);
+        }
+
+        // How many requests may be outstanding at once (scripts pipeline read-only commands)
+        int maxInFlight = UDPClient.DEFAULT_MAX_IN_FLIGHT;
+        String inFlightEnv = System.getenv("CLIENT_MAX_IN_FLIGHT");
+        if (inFlightEnv != null && !inFlightEnv.isBlank()) {
+            try {
+                maxInFlight = Math.max(1, Integer.parseInt(inFlightEnv.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid CLIENT_MAX_IN_FLIGHT value: " + inFlightEnv + ". Using " + maxInFlight + ".");
+            }
+        }
 
-        UDPClient client;
+        // "binary" (default) or "java" to talk to servers that only understand Java serialization
+        WireFormat wireFormat = WireFormat.BINARY;
+        try {
+            wireFormat = WireFormat.fromString(System.getenv("CLIENT_WIRE_FORMAT"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ". Using the binary format.");
+        }
+
+        // CLIENT_SHARDS=host:port,host:port,... talks to a sharded cluster instead; the list is in shard index order
+        String shardsEnv = System.getenv("CLIENT_SHARDS");
+
+        // With several servers, reads still unanswered after this many ms are also sent to a second server
+        long hedgeMillis = 0;
+        String hedgeEnv = System.getenv("CLIENT_HEDGE_MILLIS");
+        if (hedgeEnv != null && !hedgeEnv.isBlank()) {
+            try {
+                hedgeMillis = Math.max(0, Long.parseLong(hedgeEnv.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid CLIENT_HEDGE_MILLIS value: " + hedgeEnv + ". Hedging is off.");
+            }
+        }
+
+        CommandClient client;
         try(IOService ioService= new ConsoleIOService(new Scanner(System.in))) {
-            client = new UDPClient(serverHost, serverPort);
+            if (shardsEnv != null && !shardsEnv.isBlank()) {
+                client = connectToShards(shardsEnv, maxInFlight, wireFormat);
+                ioService.print("Client started. Connecting to the shards " + shardsEnv.trim());
+            } else if (servers.size() > 1) {
+                client = connectToServers(servers, maxInFlight, hedgeMillis, wireFormat);
+                ioService.print("Client started. Connecting to the servers " + String.join(", ", servers));
+            } else {
+                client = openClient(servers.get(0), maxInFlight, wireFormat);
+                ioService.print("Client started. Connecting to server " + servers.get(0));
+            }
             CommandParser commandParser = new CommandParser(ioService,client);
 
 
-            ioService.print("Client started. Connecting to server " + serverHost + ":" + serverPort);
             ioService.print("Type 'help' for available commands or 'exit' to quit.");
 
             while (true) {
@@ -82,6 +138,11 @@ public class ClientMain {
                 }
 
                 try {
+                    // A plain 'show' is fetched page by page so that neither side holds the whole collection at once
+                    if (command instanceof ShowCommand && command.getArg().isEmpty()) {
+                        showAllPages(client, ioService);
+                        continue;
+                    }
                     Response response  = client.sendAndReceive(command);
                     if (response != null) {
                         if (response.isSuccess()) {
@@ -101,19 +162,30 @@ public class ClientMain {
 
                             // --- START OF THE ADDED BLOCK FOR SHOW COMMAND DATA ---
                             if (command instanceof ShowCommand && response.getData() != null) {
-                                if (response.getData() instanceof List) {
+                                if (response.getData() instanceof PersonPage) {
+                                    PersonPage page = (PersonPage) response.getData();
+                                    ioService.print("--- Collection Data ---");
+                                    printPersons(page.getPersons(), ioService);
+                                    ioService.print(page.hasNext()
+                                            ? "--- Next page: show " + page.getPersons().size() + " " + page.getNextCursor() + " ---"
+                                            : "--- End Collection Data ---");
+                                } else if (response.getData() instanceof PersonDelta) {
+                                    PersonDelta delta = (PersonDelta) response.getData();
+                                    if (!delta.getChanged().isEmpty()) {
+                                        ioService.print("--- " + (delta.isFullResync() ? "Collection Data" : "Changed Persons") + " ---");
+                                        printPersons(delta.getChanged(), ioService);
+                                    }
+                                    if (!delta.getRemovedIds().isEmpty()) {
+                                        ioService.print("Removed ids: " + delta.getRemovedIds());
+                                    }
+                                    ioService.print("--- Next: show since " + delta.getSyncToken() + " ---");
+                                } else if (response.getData() instanceof List) {
                                     List<?> dataList = (List<?>) response.getData();
                                     if (dataList.isEmpty()) {
                                         ioService.print("The collection is empty.");
                                     } else {
                                         ioService.print("--- Collection Data ---");
-                                        for (Object item : dataList) {
-                                            if (item instanceof Person) {
-                                                ioService.print(((Person) item).toString()); // Print Person details
-                                            } else {
-                                                ioService.print(item.toString()); // Fallback for other types
-                                            }
-                                        }
+                                        printPersons(dataList, ioService);
                                         ioService.print("--- End Collection Data ---");
                                     }
                                 } else {
@@ -146,4 +218,80 @@ public class ClientMain {
             System.err.println("Error initializing client: " + e.getMessage());
         }
     }
+
+    private static CommandClient connectToShards(String shardsEnv, int maxInFlight, WireFormat wireFormat) throws IOException {
+        List<UDPClient> shards = new ArrayList<>();
+        try {
+            for (String address : shardsEnv.trim().split("\\s*,\\s*")) {
+                shards.add(openClient(address, maxInFlight, wireFormat));
+            }
+        } catch (IOException e) {
+            shards.forEach(UDPClient::close);
+            throw new IOException("Invalid CLIENT_SHARDS value: " + e.getMessage(), e);
+        }
+        return new ShardedClient(shards);
+    }
+
+    private static CommandClient connectToServers(List<String> servers, int maxInFlight, long hedgeMillis,
+                                                  WireFormat wireFormat) throws IOException {
+        List<UDPClient> clients = new ArrayList<>();
+        try {
+            for (String address : servers) {
+                clients.add(openClient(address, maxInFlight, wireFormat));
+            }
+        } catch (IOException e) {
+            clients.forEach(UDPClient::close);
+            throw e;
+        }
+        return new FailoverClient(servers, clients, hedgeMillis);
+    }
+
+    private static UDPClient openClient(String address, int maxInFlight, WireFormat wireFormat) throws IOException {
+        String[] parts = address.trim().split(":");
+        try {
+            if (parts.length != 2) {
+                throw new NumberFormatException("expected host:port");
+            }
+            return new UDPClient(parts[0], Integer.parseInt(parts[1]), maxInFlight, wireFormat);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid server address " + address + " (" + e.getMessage() + ")");
+        }
+    }
+
+    // Walks the collection with 'show pageSize cursor'. The next page is requested before the current one is printed,
+    // so the round trip overlaps with rendering.
+    private static void showAllPages(CommandClient client, IOService ioService) throws IOException, ClassNotFoundException {
+        CompletableFuture<Response> next = client.sendAsync(new ShowCommand(SHOW_PAGE_SIZE, null));
+        boolean first = true;
+        while (next != null) {
+            Response response = client.await(next);
+            if (!response.isSuccess()) {
+                ioService.print("Server Error: " + response.getMessage());
+                return;
+            }
+            if (!(response.getData() instanceof PersonPage)) {
+                ioService.print("Server Response: " + response.getMessage()); // e.g. the collection is empty
+                return;
+            }
+            PersonPage page = (PersonPage) response.getData();
+            next = page.hasNext() ? client.sendAsync(new ShowCommand(SHOW_PAGE_SIZE, page.getNextCursor())) : null;
+            if (first) {
+                ioService.print("Server Response: DISPLAYING THE COLLECTION DATA (" + page.getTotalCount() + " persons):");
+                ioService.print("--- Collection Data ---");
+                first = false;
+            }
+            printPersons(page.getPersons(), ioService);
+        }
+        ioService.print("--- End Collection Data ---");
+    }
+
+    private static void printPersons(List<?> items, IOService ioService) {
+        for (Object item : items) {
+            if (item instanceof Person) {
+                ioService.print(((Person) item).toString()); // Print Person details
+            } else {
+                ioService.print(item.toString()); // Fallback for other types
+            }
+        }
+    }
 }
\ No newline at end of file
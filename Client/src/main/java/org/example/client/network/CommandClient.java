@@ -0,0 +1,47 @@
+package org.example.client.network;
+
+import org.example.common.codec.WireFormat;
+import org.example.common.command.Command;
+import org.example.common.response.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// What the console and the script runner need from a connection: a single server (UDPClient)
+// or a cluster of shards behind one facade (ShardedClient).
+public interface CommandClient extends AutoCloseable {
+
+    // Sends the command and returns immediately; the future fails with an IOException when no answer arrives.
+    CompletableFuture<Response> sendAsync(Command command);
+
+    // Waits for a response returned by sendAsync, unwrapping the failure the same way as sendAndReceive.
+    default Response await(CompletableFuture<Response> pending) throws IOException, ClassNotFoundException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Client interrupted while waiting for the response.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) cause;
+            }
+            throw new IOException("Unexpected error while waiting for the response: " + cause.getMessage(), cause);
+        }
+    }
+
+    // Blocking convenience wrapper around sendAsync.
+    default Response sendAndReceive(Command command) throws IOException, ClassNotFoundException {
+        return await(sendAsync(command));
+    }
+
+    // Format the commands are sent in, e.g. to estimate how many fit into one datagram.
+    WireFormat getWireFormat();
+
+    @Override
+    void close();
+}
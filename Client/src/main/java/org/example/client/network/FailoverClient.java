@@ -0,0 +1,326 @@
+package org.example.client.network;
+
+import org.example.common.codec.WireFormat;
+import org.example.common.command.BatchCommand;
+import org.example.common.command.Command;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.response.Response;
+
+import java.net.PortUnreachableException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Client for several servers that hold the same collection, e.g. a primary and its replicas.
+ Every command goes to the healthy server with the lowest smoothed round-trip time; reads try servers that were
+ never measured first so that each of them gets an estimate. A server that times out or whose port is
+ reported unreachable is marked down for a while (doubling on repeated failures) and the command moves on to
+ the next server at once instead of retrying the dead one for the full request timeout.
+ Reads may go to any server and, with hedging on, a read that has not been answered after hedgeDelayMillis is
+ also sent to a second server; the first answer wins. Writes are only moved when they cannot have been executed:
+ the port was unreachable or a replica refused them, so a write is never applied twice.
+ */
+public class FailoverClient implements CommandClient {
+    private static final Logger LOG = Log.getLogger(FailoverClient.class);
+
+    private static final Set<String> READ_COMMANDS = Set.of(
+            "help", "info", "show", "count_by_location", "average_of_height", "max_by_id", "stats", "history");
+    private static final long MIN_ATTEMPT_TIMEOUT_MILLIS = 250; // A read waits at least this long before moving on
+    private static final int ATTEMPT_TIMEOUT_RTOS = 3; // and otherwise a few retransmission timeouts
+    private static final long BASE_DOWN_MILLIS = 1000; // How long a failed server is avoided, doubled per failure
+    private static final long MAX_DOWN_MILLIS = 30_000;
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final long hedgeDelayMillis; // 0 turns hedging off
+    private final ScheduledExecutorService hedgeTimer;
+    private volatile Endpoint writer; // The server that accepted the last write
+
+    public FailoverClient(List<String> addresses, List<UDPClient> clients, long hedgeDelayMillis) {
+        if (clients.isEmpty() || addresses.size() != clients.size()) {
+            throw new IllegalArgumentException("Every server needs an address and a client.");
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            endpoints.add(new Endpoint(addresses.get(i), clients.get(i)));
+        }
+        this.hedgeDelayMillis = Math.max(0, hedgeDelayMillis);
+        this.hedgeTimer = this.hedgeDelayMillis == 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "failover-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Command command) {
+        Call call = new Call(command, !isRead(command));
+        call.tryNext();
+        if (hedgeTimer != null && !call.write) {
+            hedgeTimer.schedule(call::hedge, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return call.result;
+    }
+
+    // One line per server: address, state and smoothed RTT
+    public String describeEndpoints() {
+        StringBuilder builder = new StringBuilder();
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints) {
+            RttEstimator rtt = endpoint.client.getRttEstimator();
+            builder.append(builder.length() == 0 ? "" : "\n").append(endpoint.address)
+                    .append(endpoint.isUp(now) ? " up" : " down")
+                    .append(endpoint.readOnly ? ", read-only" : "")
+                    .append(rtt.hasSamples() ? ", rtt " + rtt.getSmoothedRtt() + " ms" : ", not measured");
+        }
+        return builder.toString();
+    }
+
+    private static boolean isRead(Command command) {
+        if (command instanceof BatchCommand) {
+            for (Command inner : ((BatchCommand) command).getCommands()) {
+                if (!isRead(inner)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return READ_COMMANDS.contains(command.getName());
+    }
+
+    // A replica refuses writes, also the ones inside a batch; none of them was executed.
+    private static boolean refusedByReplica(Response response) {
+        if (response.getMessage() != null && response.getMessage().startsWith(Response.READ_ONLY_REPLICA)) {
+            return true;
+        }
+        if (response.getData() instanceof List) {
+            for (Object item : (List<?>) response.getData()) {
+                if (item instanceof Response && refusedByReplica((Response) item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Healthy servers by RTT. Reads try unmeasured servers first to measure them; writes start with the last server
+    // that took one, prefer measured servers and skip known replicas. When every server is down, the one that has
+    // been down the longest is tried anyway, but a write only goes to such a server as its first attempt.
+    private Endpoint pick(boolean write, Set<Endpoint> tried) {
+        long now = System.currentTimeMillis();
+        Endpoint lastWriter = writer;
+        if (write && lastWriter != null && !tried.contains(lastWriter) && lastWriter.isUp(now)) {
+            return lastWriter;
+        }
+        Endpoint best = null;
+        Endpoint fallback = null;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.isUp(now) && !(write && endpoint.readOnly)) {
+                if (best == null || (write ? Endpoint.BY_RTT_MEASURED_FIRST : Endpoint.BY_RTT).compare(endpoint, best) < 0) {
+                    best = endpoint;
+                }
+            } else if (fallback == null || endpoint.downUntil < fallback.downUntil) {
+                fallback = endpoint;
+            }
+        }
+        return best != null || (write && !tried.isEmpty()) ? best : fallback;
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return endpoints.get(0).client.getWireFormat();
+    }
+
+    @Override
+    public void close() {
+        if (hedgeTimer != null) {
+            hedgeTimer.shutdownNow();
+        }
+        for (Endpoint endpoint : endpoints) {
+            endpoint.client.close();
+        }
+    }
+
+    private static final class Endpoint {
+        // Unmeasured servers sort first so that every server gets measured
+        private static final Comparator<Endpoint> BY_RTT = Comparator.comparingLong(endpoint -> {
+            RttEstimator rtt = endpoint.client.getRttEstimator();
+            return rtt.hasSamples() ? rtt.getSmoothedRtt() : -1;
+        });
+        private static final Comparator<Endpoint> BY_RTT_MEASURED_FIRST = Comparator.comparingLong(endpoint -> {
+            RttEstimator rtt = endpoint.client.getRttEstimator();
+            return rtt.hasSamples() ? rtt.getSmoothedRtt() : Long.MAX_VALUE;
+        });
+
+        private final String address;
+        private final UDPClient client;
+        private volatile long downUntil;
+        private volatile int failures;
+        private volatile boolean readOnly; // Learned from a refused write
+
+        private Endpoint(String address, UDPClient client) {
+            this.address = address;
+            this.client = client;
+        }
+
+        private boolean isUp(long now) {
+            return now >= downUntil;
+        }
+
+        private void markUp() {
+            if (failures > 0) {
+                LOG.info("Server {} is answering again.", address);
+            }
+            failures = 0;
+            downUntil = 0;
+        }
+
+        private void markDown(Throwable error) {
+            int failed = ++failures;
+            long pause = Math.min(MAX_DOWN_MILLIS, BASE_DOWN_MILLIS << Math.min(failed - 1, 16));
+            downUntil = System.currentTimeMillis() + pause;
+            LOG.warn("Server {} failed ({}); avoiding it for {} ms.", address, error.getMessage(), pause);
+        }
+
+        private long readTimeout() {
+            return Math.max(MIN_ATTEMPT_TIMEOUT_MILLIS, ATTEMPT_TIMEOUT_RTOS * client.getRttEstimator().getRto());
+        }
+    }
+
+    // One command on its way through the servers. At most two attempts run at the same time (with hedging).
+    private final class Call {
+        private final Command command;
+        private final boolean write;
+        private final CompletableFuture<Response> result = new CompletableFuture<>();
+        private final Set<Endpoint> tried = new HashSet<>();
+        private final List<Attempt> attempts = new ArrayList<>();
+        private int running;
+        private Throwable lastError;
+        private Response lastRefusal;
+
+        private Call(Command command, boolean write) {
+            this.command = command;
+            this.write = write;
+        }
+
+        // Starts an attempt on the next server; returns false when no server is left.
+        private boolean tryNext() {
+            Endpoint endpoint;
+            long timeout;
+            synchronized (this) {
+                endpoint = pick(write, tried);
+                if (endpoint == null) {
+                    return false;
+                }
+                tried.add(endpoint);
+                running++;
+                // A write or the last server left gets the full timeout: there is nowhere else to go
+                timeout = write || tried.size() == endpoints.size()
+                        ? UDPClient.REQUEST_TIMEOUT_MILLIS : endpoint.readTimeout();
+            }
+            LOG.debug("Sending {} to {}", command.getName(), endpoint.address);
+            CompletableFuture<Response> attempt = endpoint.client.sendAsync(command, timeout);
+            synchronized (this) {
+                attempts.add(new Attempt(endpoint, attempt));
+            }
+            attempt.whenComplete((response, error) -> onAnswer(endpoint, response, error));
+            return true;
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (result.isDone() || running != 1) {
+                    return;
+                }
+            }
+            if (tryNext()) {
+                LOG.debug("Hedged {} after {} ms", command.getName(), hedgeDelayMillis);
+            }
+        }
+
+        private void onAnswer(Endpoint endpoint, Response response, Throwable error) {
+            if (error instanceof CancellationException) {
+                return; // Lost the race against a hedged attempt
+            }
+            boolean moveOn;
+            synchronized (this) {
+                running--;
+                if (result.isDone()) {
+                    return;
+                }
+                if (error == null) {
+                    endpoint.markUp();
+                    if (write && refusedByReplica(response)) {
+                        endpoint.readOnly = true;
+                        lastRefusal = response;
+                        moveOn = true;
+                    } else {
+                        if (write) {
+                            writer = endpoint;
+                        }
+                        moveOn = false;
+                    }
+                } else {
+                    endpoint.markDown(error);
+                    lastError = error;
+                    // A timed-out write may have been executed, so it is not sent anywhere else
+                    moveOn = !write || error instanceof PortUnreachableException;
+                }
+            }
+            if (!moveOn && error == null) {
+                finish(response, null);
+            } else if (!(moveOn && tryNext())) {
+                synchronized (this) {
+                    if (running > 0) {
+                        return; // The hedged attempt may still answer
+                    }
+                }
+                if (lastRefusal != null) {
+                    finish(lastRefusal, null);
+                } else {
+                    finish(null, lastError != null ? lastError
+                            : new SocketTimeoutException("No server could be reached."));
+                }
+            }
+        }
+
+        // Completes the call and abandons the attempts that are still running (outside the lock, see UDPClient).
+        // A server that never answered anything and just lost a hedged race is avoided like a failed one;
+        // otherwise it would stay unmeasured and keep being tried first.
+        private void finish(Response response, Throwable error) {
+            boolean completed = error == null ? result.complete(response) : result.completeExceptionally(error);
+            if (!completed) {
+                return;
+            }
+            List<Attempt> started;
+            synchronized (this) {
+                started = new ArrayList<>(attempts);
+            }
+            for (Attempt attempt : started) {
+                if (attempt.future.cancel(false) && !attempt.endpoint.client.getRttEstimator().hasSamples()) {
+                    attempt.endpoint.markDown(new SocketTimeoutException("no answer within " + hedgeDelayMillis + " ms"));
+                }
+            }
+        }
+    }
+
+    private static final class Attempt {
+        private final Endpoint endpoint;
+        private final CompletableFuture<Response> future;
+
+        private Attempt(Endpoint endpoint, CompletableFuture<Response> future) {
+            this.endpoint = endpoint;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.client.network;
+
+import org.example.common.network.ChunkProtocol;
+
+// Reassembly buffer for one chunked response.
+// Chunks may arrive in any order and more than once; the payload is complete once every index was seen.
+public class ResponseAssembler {
+    private static final int MAX_PAYLOAD_BYTES = 128 * 1024 * 1024; // Hard limit on what one response may allocate
+
+    private final long transferId;
+    private final int count;
+    private final boolean deflated;
+    private final byte[] payload;
+    private final boolean[] received;
+    private int receivedCount;
+
+    // The total length comes from a datagram, so it is checked before the buffer is allocated: it must need exactly
+    // the announced number of chunks and stay below the hard limit.
+    public ResponseAssembler(ChunkProtocol.Chunk first) {
+        long totalLength = first.getTotalLength();
+        if (totalLength > MAX_PAYLOAD_BYTES
+                || totalLength > (long) first.getCount() * ChunkProtocol.MAX_CHUNK_PAYLOAD
+                || (first.getCount() > 1 && totalLength <= (long) (first.getCount() - 1) * ChunkProtocol.MAX_CHUNK_PAYLOAD)) {
+            throw new IllegalArgumentException("Invalid response length " + totalLength + " for "
+                    + first.getCount() + " chunks.");
+        }
+        this.transferId = first.getTransferId();
+        this.count = first.getCount();
+        this.deflated = first.isDeflated();
+        this.payload = new byte[first.getTotalLength()];
+        this.received = new boolean[count];
+    }
+
+    public long getTransferId() {
+        return transferId;
+    }
+
+    // Copies the chunk into place. Returns false if the chunk does not belong to this transfer.
+    public boolean add(ChunkProtocol.Chunk chunk) {
+        if (chunk.getTransferId() != transferId || chunk.getCount() != count
+                || chunk.getTotalLength() != payload.length) {
+            return false;
+        }
+        int index = chunk.getIndex();
+        if (received[index]) {
+            return true; // Duplicate after a resend
+        }
+        int offset = index * ChunkProtocol.MAX_CHUNK_PAYLOAD;
+        int length = chunk.getPayload().remaining();
+        if (offset + length > payload.length) {
+            return false;
+        }
+        chunk.getPayload().get(payload, offset, length);
+        received[index] = true;
+        receivedCount++;
+        return true;
+    }
+
+    public boolean isComplete() {
+        return receivedCount == count;
+    }
+
+    // Fills the array with the indices still missing and returns how many were written.
+    public int missingChunks(int[] target) {
+        int n = 0;
+        for (int i = 0; i < count && n < target.length; i++) {
+            if (!received[i]) {
+                target[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    // True if the reassembled payload has to be inflated before it is deserialized.
+    public boolean isDeflated() {
+        return deflated;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.client.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/* Round-trip time estimate for one server, computed like TCP's retransmission timer (RFC 6298):
+ SRTT and RTTVAR are exponentially weighted averages of the samples and RTO = SRTT + 4 * RTTVAR.
+ Retransmissions double the timeout and add a little random jitter so that many clients
+ that lost packets at the same moment do not retry in lockstep.
+ */
+public class RttEstimator {
+    public static final long INITIAL_RTO_MILLIS = 1000; // Used until the first sample arrives
+    public static final long MIN_RTO_MILLIS = 50; // Floor against retransmitting on scheduling noise
+    public static final long MAX_RTO_MILLIS = 5000; // The old fixed timeout; backoff never waits longer than that
+    private static final double ALPHA = 1.0 / 8; // Gain of the smoothed RTT
+    private static final double BETA = 1.0 / 4; // Gain of the RTT variance
+    private static final double MAX_JITTER = 0.25; // Up to +25% on every timeout
+
+    private double smoothedRtt = -1; // Negative until the first sample
+    private double rttVariance;
+    private long rto = INITIAL_RTO_MILLIS;
+
+    // Feeds one measured round trip. Only requests answered after their first transmission may be
+    // sampled (Karn's algorithm): the answer to a retransmitted request cannot be matched to one send.
+    public synchronized void addSample(long rttMillis) {
+        double sample = Math.max(0, rttMillis);
+        if (smoothedRtt < 0) {
+            smoothedRtt = sample;
+            rttVariance = sample / 2;
+        } else {
+            rttVariance = (1 - BETA) * rttVariance + BETA * Math.abs(smoothedRtt - sample);
+            smoothedRtt = (1 - ALPHA) * smoothedRtt + ALPHA * sample;
+        }
+        rto = clamp(Math.round(smoothedRtt + 4 * rttVariance));
+    }
+
+    public synchronized long getRto() {
+        return rto;
+    }
+
+    public synchronized boolean hasSamples() {
+        return smoothedRtt >= 0;
+    }
+
+    // Smoothed RTT, or the initial RTO while nothing was measured yet.
+    public synchronized long getSmoothedRtt() {
+        return smoothedRtt < 0 ? INITIAL_RTO_MILLIS : Math.round(smoothedRtt);
+    }
+
+    // Timeout before the given transmission (1 = first send) of a request is considered lost.
+    public long timeoutFor(int attempt) {
+        long base = getRto();
+        long backedOff = base << Math.min(attempt - 1, 16);
+        long jitter = Math.round(backedOff * MAX_JITTER * ThreadLocalRandom.current().nextDouble());
+        return clamp(backedOff + jitter);
+    }
+
+    private static long clamp(long millis) {
+        return Math.max(MIN_RTO_MILLIS, Math.min(MAX_RTO_MILLIS, millis));
+    }
+}
@@ -0,0 +1,419 @@
+package org.example.client.network;
+
+import org.example.common.command.AddIfMaxCommand;
+import org.example.common.command.AverageOfHeightCommand;
+import org.example.common.codec.WireFormat;
+import org.example.common.command.BatchCommand;
+import org.example.common.command.Command;
+import org.example.common.command.ShowCommand;
+import org.example.common.data.Person;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.network.Sharding;
+import org.example.common.response.HeightStats;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
+import org.example.common.response.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Client for a cluster of servers that each hold the persons whose id maps to their shard (see Sharding).
+ Commands about one id go to the shard that owns it, new persons are spread round-robin (the receiving server
+ assigns an id of its own shard), and commands about the whole collection are sent to every shard at once
+ and their answers merged into what a single server would have replied.
+ */
+public class ShardedClient implements CommandClient {
+    private static final Logger LOG = Log.getLogger(ShardedClient.class);
+
+    private final List<UDPClient> shards; // Index in the list = shard index of the server
+    private final AtomicInteger nextAddShard = new AtomicInteger();
+
+    public ShardedClient(List<UDPClient> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.shards = new ArrayList<>(shards);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public CompletableFuture<Response> sendAsync(Command command) {
+        switch (command.getName()) {
+            case "show":
+                if (command.getArg().isBlank()) {
+                    return showAll(command);
+                }
+                return command.getArg().trim().startsWith(ShowCommand.SINCE)
+                        ? showSince(command.getArg().trim().split("\\s+")) : showPage((ShowCommand) command);
+            case "count_by_location":
+                return scatter(command).thenApply(this::mergeCount);
+            case "average_of_height":
+                return scatter(command).thenApply(this::mergeHeightStats);
+            case "max_by_id":
+                return scatter(command).thenApply(this::mergeMaxById);
+            case "remove_lower":
+                return scatter(command).thenApply(this::mergeRemoveLower);
+            case "clear":
+                return scatter(command).thenApply(responses -> firstFailureOr(responses, responses.get(0)));
+            case "info":
+                return scatter(command).thenApply(this::mergeInfo);
+            case "stats":
+                return scatter(command).thenApply(this::mergeStats);
+            case "add_if_max":
+                return addIfMax((AddIfMaxCommand) command);
+            case "batch":
+                return batch((BatchCommand) command);
+            default:
+                return shards.get(ownerOf(command)).sendAsync(command);
+        }
+    }
+
+    // The shard a single-key command goes to, or -1 if it needs every shard.
+    private int ownerOf(Command command) {
+        switch (command.getName()) {
+            case "add":
+                return Math.floorMod(nextAddShard.getAndIncrement(), shards.size());
+            case "update":
+            case "remove_by_id":
+                try {
+                    return Sharding.shardOf(Integer.parseInt(command.getArg().trim()), shards.size());
+                } catch (NumberFormatException e) {
+                    return 0; // Any server answers with the same parse error
+                }
+            case "show":
+            case "count_by_location":
+            case "average_of_height":
+            case "max_by_id":
+            case "remove_lower":
+            case "clear":
+            case "info":
+            case "stats":
+            case "add_if_max":
+            case "batch":
+                return -1;
+            default:
+                return 0; // help, history and anything the servers will reject
+        }
+    }
+
+    private CompletableFuture<List<Response>> scatter(Command command) {
+        List<CompletableFuture<Response>> pending = new ArrayList<>(shards.size());
+        for (UDPClient shard : shards) {
+            pending.add(shard.sendAsync(command));
+        }
+        return gather(pending);
+    }
+
+    // Fails as soon as one shard fails: a merge over the remaining shards would silently be wrong.
+    private static CompletableFuture<List<Response>> gather(List<CompletableFuture<Response>> pending) {
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<Response> responses = new ArrayList<>(pending.size());
+            for (CompletableFuture<Response> future : pending) {
+                responses.add(future.join());
+            }
+            return responses;
+        });
+    }
+
+    private static Response firstFailureOr(List<Response> responses, Response otherwise) {
+        for (Response response : responses) {
+            if (!response.isSuccess()) {
+                return response;
+            }
+        }
+        return otherwise;
+    }
+
+    private CompletableFuture<Response> showAll(Command command) {
+        return scatter(command).thenApply(responses -> {
+            ArrayList<Person> persons = new ArrayList<>();
+            for (Response response : responses) {
+                if (!response.isSuccess()) {
+                    return response;
+                }
+                if (response.getData() instanceof List) {
+                    for (Object item : (List<?>) response.getData()) {
+                        persons.add((Person) item);
+                    }
+                }
+            }
+            if (persons.isEmpty()) {
+                return new Response("The collection is empty.", true);
+            }
+            Collections.sort(persons);
+            return new Response("DISPLAYING THE COLLECTION DATA:", true, persons);
+        });
+    }
+
+    // Every shard returns its first pageSize persons after the cursor; the smallest pageSize of their union are
+    // exactly the next page of the whole collection. Persons of equal height on different shards are kept together
+    // because the cursor only carries the height.
+    private CompletableFuture<Response> showPage(ShowCommand command) {
+        return scatter(command).thenApply(responses -> {
+            List<Person> merged = new ArrayList<>();
+            boolean shardHasMore = false;
+            int totalCount = 0;
+            for (Response response : responses) {
+                if (!response.isSuccess()) {
+                    return response;
+                }
+                if (response.getData() instanceof PersonPage) {
+                    PersonPage page = (PersonPage) response.getData();
+                    merged.addAll(page.getPersons());
+                    shardHasMore |= page.hasNext();
+                    totalCount += page.getTotalCount();
+                }
+            }
+            if (totalCount == 0) {
+                return new Response("The collection is empty.", true);
+            }
+            Collections.sort(merged);
+            int pageSize = Integer.parseInt(command.getArg().trim().split("\\s+")[0]); // The servers accepted it
+            int end = Math.min(pageSize, merged.size());
+            while (end > 0 && end < merged.size()
+                    && merged.get(end).getHeight() == merged.get(end - 1).getHeight()) {
+                end++;
+            }
+            List<Person> persons = new ArrayList<>(merged.subList(0, end));
+            String nextCursor = (end < merged.size() || shardHasMore) && !persons.isEmpty()
+                    ? Double.toString(persons.get(persons.size() - 1).getHeight()) : null;
+            PersonPage page = new PersonPage(persons, nextCursor, totalCount);
+            return new Response("DISPLAYING " + persons.size() + " OF " + totalCount + " PERSONS:", true, page);
+        });
+    }
+
+    // 'show since' with one sync token per shard, joined by commas in shard order. If any shard has to resync fully,
+    // so does the client, because a full resync replaces everything it holds: the shards that answered with a delta
+    // are then asked for everything as well.
+    private CompletableFuture<Response> showSince(String[] args) {
+        String[] tokens = args.length > 1 ? args[1].split(",", -1) : new String[0];
+        List<CompletableFuture<Response>> pending = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            pending.add(shards.get(i).sendAsync(ShowCommand.since(tokens.length == shards.size() ? tokens[i] : null)));
+        }
+        return gather(pending).thenCompose(responses -> {
+            if (firstFailureOr(responses, null) != null || responses.stream().noneMatch(r -> deltaOf(r).isFullResync())) {
+                return CompletableFuture.completedFuture(responses);
+            }
+            List<CompletableFuture<Response>> resync = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                resync.add(deltaOf(responses.get(i)).isFullResync()
+                        ? CompletableFuture.completedFuture(responses.get(i)) : shards.get(i).sendAsync(ShowCommand.since(null)));
+            }
+            return gather(resync);
+        }).thenApply(this::mergeDeltas);
+    }
+
+    private static PersonDelta deltaOf(Response response) {
+        return response.getData() instanceof PersonDelta
+                ? (PersonDelta) response.getData() : new PersonDelta(null, true, List.of(), List.of());
+    }
+
+    private Response mergeDeltas(List<Response> responses) {
+        Response failure = firstFailureOr(responses, null);
+        if (failure != null) {
+            return failure;
+        }
+        List<String> tokens = new ArrayList<>(responses.size());
+        List<Person> changed = new ArrayList<>();
+        List<Integer> removedIds = new ArrayList<>();
+        boolean fullResync = false;
+        for (Response response : responses) {
+            PersonDelta delta = deltaOf(response);
+            tokens.add(delta.getSyncToken());
+            changed.addAll(delta.getChanged());
+            removedIds.addAll(delta.getRemovedIds());
+            fullResync |= delta.isFullResync();
+        }
+        Collections.sort(changed);
+        PersonDelta delta = new PersonDelta(String.join(",", tokens), fullResync, changed, removedIds);
+        String message = fullResync ? "FULL RESYNC, " + changed.size() + " PERSONS:"
+                : delta.isUpToDate() ? "Up to date."
+                : changed.size() + " CHANGED, " + removedIds.size() + " REMOVED:";
+        return new Response(message, true, delta);
+    }
+
+    private Response mergeCount(List<Response> responses) {
+        long total = 0;
+        for (Response response : responses) {
+            if (!response.isSuccess() || !(response.getData() instanceof Number)) {
+                return response;
+            }
+            total += ((Number) response.getData()).longValue();
+        }
+        // Keep the server's wording of the location, replace only the number
+        String message = responses.get(0).getMessage();
+        return new Response(message.substring(0, message.lastIndexOf(':') + 1) + " " + total, true, total);
+    }
+
+    private Response mergeHeightStats(List<Response> responses) {
+        HeightStats stats = new HeightStats(0, 0, 0);
+        for (Response response : responses) {
+            if (!(response.getData() instanceof HeightStats)) {
+                return response;
+            }
+            stats = stats.merge((HeightStats) response.getData());
+        }
+        if (stats.getCount() == 0) {
+            return new Response("Collection is empty", false, stats);
+        }
+        return new Response(String.format("Average height: %.2f", stats.getAverage()), true, stats);
+    }
+
+    private Response mergeMaxById(List<Response> responses) {
+        Response best = null;
+        for (Response response : responses) {
+            if (!response.isSuccess()) {
+                return response;
+            }
+            if (response.getData() instanceof Person && (best == null
+                    || ((Person) response.getData()).getId() > ((Person) best.getData()).getId())) {
+                best = response;
+            }
+        }
+        return best != null ? best : responses.get(0);
+    }
+
+    private Response mergeRemoveLower(List<Response> responses) {
+        int removed = 0;
+        for (Response response : responses) {
+            if (!response.isSuccess() || !(response.getData() instanceof Number)) {
+                return response;
+            }
+            removed += ((Number) response.getData()).intValue();
+        }
+        return new Response("Removed " + removed + " persons.", true, removed);
+    }
+
+    private Response mergeInfo(List<Response> responses) {
+        int total = 0;
+        for (Response response : responses) {
+            if (!response.isSuccess() || !(response.getData() instanceof Number)) {
+                return response;
+            }
+            total += ((Number) response.getData()).intValue();
+        }
+        String message = responses.get(0).getMessage();
+        int countLine = message.lastIndexOf("Number of persons in collection:");
+        if (countLine < 0) {
+            return responses.get(0);
+        }
+        return new Response(message.substring(0, countLine) + "Number of persons in collection: " + total
+                + "\nShards: " + shards.size(), true, total);
+    }
+
+    private Response mergeStats(List<Response> responses) {
+        StringBuilder builder = new StringBuilder();
+        boolean success = true;
+        for (int i = 0; i < responses.size(); i++) {
+            builder.append(i == 0 ? "" : "\n").append("--- Shard ").append(i).append(" ---\n")
+                    .append(responses.get(i).getMessage());
+            success &= responses.get(i).isSuccess();
+        }
+        return new Response(builder.toString(), success);
+    }
+
+    // The height has to beat the maximum of the whole cluster, so the maxima are collected first. The shard that gets
+    // the person repeats the check against its own part atomically; a concurrent add on another shard is not seen.
+    private CompletableFuture<Response> addIfMax(AddIfMaxCommand command) {
+        Person person = command.getPerson();
+        if (person == null) {
+            return shards.get(0).sendAsync(command); // The server reports the missing person
+        }
+        return scatter(new AverageOfHeightCommand("")).thenCompose(responses -> {
+            Object stats = mergeHeightStats(responses).getData();
+            double maxHeight = stats instanceof HeightStats ? ((HeightStats) stats).getMax() : 0;
+            if (person.getHeight() <= maxHeight) {
+                return CompletableFuture.completedFuture(new Response(person.getName() + " NOT ADDED as its height ("
+                        + person.getHeight() + ") ≤ max height (" + maxHeight + ").", true));
+            }
+            return shards.get(Math.floorMod(nextAddShard.getAndIncrement(), shards.size())).sendAsync(command);
+        });
+    }
+
+    // A batch of single-key commands is split into one batch per shard, sent in parallel, and the answers are put
+    // back in the original order; commands on different shards touch different persons, so only the order within
+    // a shard matters. Batches that contain cluster-wide commands run one command after another instead.
+    private CompletableFuture<Response> batch(BatchCommand command) {
+        List<Command> commands = command.getCommands();
+        int[] owners = new int[commands.size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = ownerOf(commands.get(i));
+            if (owners[i] < 0) {
+                return sequential(commands, 0, new ArrayList<>());
+            }
+        }
+
+        List<Integer> sentTo = new ArrayList<>();
+        List<CompletableFuture<Response>> pending = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Command> part = new ArrayList<>();
+            for (int i = 0; i < owners.length; i++) {
+                if (owners[i] == shard) {
+                    part.add(commands.get(i));
+                }
+            }
+            if (!part.isEmpty()) {
+                sentTo.add(shard);
+                pending.add(shards.get(shard).sendAsync(new BatchCommand(part)));
+            }
+        }
+        return gather(pending).thenApply(responses -> {
+            List<List<?>> parts = new ArrayList<>(Collections.nCopies(shards.size(), null));
+            for (int k = 0; k < responses.size(); k++) {
+                if (!(responses.get(k).getData() instanceof List)) {
+                    return responses.get(k); // The whole sub-batch was turned away (e.g. the server is busy)
+                }
+                parts.set(sentTo.get(k), (List<?>) responses.get(k).getData());
+            }
+            List<Response> ordered = new ArrayList<>(owners.length);
+            int[] next = new int[shards.size()];
+            for (int owner : owners) {
+                ordered.add((Response) parts.get(owner).get(next[owner]++));
+            }
+            return batchResponse(ordered);
+        });
+    }
+
+    private CompletableFuture<Response> sequential(List<Command> commands, int index, ArrayList<Response> responses) {
+        if (index == commands.size()) {
+            return CompletableFuture.completedFuture(batchResponse(responses));
+        }
+        return sendAsync(commands.get(index)).thenCompose(response -> {
+            responses.add(response);
+            return sequential(commands, index + 1, responses);
+        });
+    }
+
+    // Same shape as the server's answer to a batch
+    private static Response batchResponse(List<Response> responses) {
+        int failed = 0;
+        for (Response response : responses) {
+            if (!response.isSuccess()) {
+                failed++;
+            }
+        }
+        return new Response("Executed " + responses.size() + " commands (" + failed + " failed).", true,
+                new ArrayList<>(responses));
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return shards.get(0).getWireFormat();
+    }
+
+    @Override
+    public void close() {
+        for (UDPClient shard : shards) {
+            shard.close();
+        }
+        LOG.debug("Closed {} shard connections.", shards.size());
+    }
+}
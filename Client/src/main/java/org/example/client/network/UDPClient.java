@@ -1,81 +1,480 @@
 package org.example.client.network;
 
+import org.example.common.codec.BinaryCodec;
+import org.example.common.codec.WireFormat;
 import org.example.common.command.Command;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.network.BufferPool;
+import org.example.common.network.ChunkProtocol;
 import org.example.common.response.Response;
+import org.example.common.util.CompressionUtil;
 import org.example.common.util.SerializationUtil;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.PortUnreachableException;
 import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class UDPClient {
-    private static final int BUFFER_SIZE = 65536; // Max UDP packet size
-    private static final int MAX_RETRIES = 5; // How many times to retry connecting to the server
-    private static final int RETRY_DELAY_MILLIS = 1000; // Delay between retries in milliseconds
-    private static final int SOCKET_TIMEOUT_MILLIS = 5000; // Timeout for receiving a response from server
+/* Pipelined UDP client. Any number of threads may call sendAsync/sendAndReceive concurrently:
+ every command gets a request id, responses are matched back to their request by that id,
+ and up to maxInFlight requests can be outstanding at the same time.
+ One receiver thread reads the (non-blocking) channel; a timer thread retransmits unanswered requests
+ after a timeout derived from the measured round-trip time (see RttEstimator).
+ */
+public class UDPClient implements CommandClient {
+    private static final Logger LOG = Log.getLogger(UDPClient.class);
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
 
-    private DatagramSocket clientSocket;
-    private InetAddress serverAddress;
-    private int serverPort;
+    public static final long REQUEST_TIMEOUT_MILLIS = 30_000; // A request is retransmitted until it is this old
+    private static final int MIN_CHUNK_GAP_MILLIS = 10; // Bounds for the silence inside a chunked response
+    private static final int MAX_CHUNK_GAP_MILLIS = 200; // before missing chunks are requested
+    private static final int MAX_NACK_ROUNDS = 10; // NACKs without progress before the transfer is abandoned
+    private static final int RECEIVE_BUFFER_BYTES = 4 * 1024 * 1024; // Room for bursts of response chunks
+
+    private final BufferPool bufferPool = BufferPool.datagramPool();
+    // Random start so that request ids of different client runs do not collide in the server's cache
+    private final AtomicLong requestIds = new AtomicLong(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+    private final Map<Long, PendingRequest> inFlight = new ConcurrentHashMap<>();
+    private final RttEstimator rttEstimator = new RttEstimator();
+    private final Semaphore window;
+    private final ScheduledExecutorService retransmitTimer;
+    private final Thread receiverThread;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final InetAddress serverAddress;
+    private final int serverPort;
+    private final WireFormat wireFormat; // Of the commands we send; responses are read in either format
+    private volatile boolean running = true;
+    private volatile long lastResponseAt; // Last datagram that answered one of our requests
 
     public UDPClient(String serverHost, int serverPort) throws IOException {
+        this(serverHost, serverPort, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public UDPClient(String serverHost, int serverPort, int maxInFlight) throws IOException {
+        this(serverHost, serverPort, maxInFlight, WireFormat.BINARY);
+    }
+
+    public UDPClient(String serverHost, int serverPort, int maxInFlight, WireFormat wireFormat) throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one request must be allowed in flight.");
+        }
         this.serverAddress = InetAddress.getByName(serverHost);
         this.serverPort = serverPort;
-        this.clientSocket = new DatagramSocket();
-        this.clientSocket.setSoTimeout(SOCKET_TIMEOUT_MILLIS); // Set a timeout for receive operations
+        this.wireFormat = wireFormat;
+        this.window = new Semaphore(maxInFlight);
+        this.channel = DatagramChannel.open();
+        this.channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES);
+        this.channel.configureBlocking(false);
+        this.channel.connect(new InetSocketAddress(serverAddress, serverPort)); // Only accept datagrams from the server
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+
+        this.retransmitTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "udp-client-retransmit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.receiverThread = new Thread(this::receiveLoop, "udp-client-receiver");
+        this.receiverThread.setDaemon(true);
+        this.receiverThread.start();
     }
 
-    public Response sendAndReceive(Command command) throws IOException, ClassNotFoundException {
-        byte[] sendData = SerializationUtil.serialize(command); // Serialize the command
+    // Sends the command and returns immediately. Blocks only while maxInFlight requests are already outstanding.
+    @Override
+    public CompletableFuture<Response> sendAsync(Command command) {
+        return sendAsync(command, REQUEST_TIMEOUT_MILLIS, false);
+    }
 
-        // Prepare the packet to send
-        DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length, serverAddress, serverPort);
+    // For callers that have another server to turn to (see FailoverClient): the request is retransmitted for at most
+    // timeoutMillis and fails at once with a PortUnreachableException when the server port is reported closed.
+    // Cancelling the returned future abandons the request.
+    public CompletableFuture<Response> sendAsync(Command command, long timeoutMillis) {
+        return sendAsync(command, timeoutMillis, true);
+    }
 
-        byte[] receiveData = new byte[BUFFER_SIZE]; // Buffer for incoming response
-        DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
+    private CompletableFuture<Response> sendAsync(Command command, long timeoutMillis, boolean failFast) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IOException("Client is closed."));
+            return future;
+        }
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new IOException("Client interrupted while waiting for a free slot.", e));
+            return future;
+        }
 
-        for (int retry = 0; retry < MAX_RETRIES; retry++) {
-            try {
-                clientSocket.send(sendPacket); // Send the command
-                System.out.println("Sent command: " + command.getName() + " to " + serverAddress + ":" + serverPort);
+        // Every retransmission carries the same id, so the server executes the command at most once
+        long requestId = nextRequestId();
+        command.setRequestId(requestId);
+        command.setAcceptedEncodings(wireFormat == WireFormat.BINARY
+                ? CompressionUtil.SUPPORTED_ENCODINGS | BinaryCodec.ENCODING_BINARY : CompressionUtil.SUPPORTED_ENCODINGS);
+        ByteBuffer sendBuffer = bufferPool.acquire();
+        try {
+            ChunkProtocol.writeRequestHeader(sendBuffer, requestId);
+            sendBuffer.position(ChunkProtocol.REQUEST_HEADER_SIZE);
+            SerializationUtil.serialize(command, sendBuffer, wireFormat);
+        } catch (IOException e) {
+            bufferPool.release(sendBuffer);
+            window.release();
+            future.completeExceptionally(e);
+            return future;
+        }
+        sendBuffer.flip();
 
-                // Wait for the response
-                clientSocket.receive(receivePacket);
-                System.out.println("Received response from server.");
+        PendingRequest request = new PendingRequest(requestId, command.getName(), sendBuffer, future, timeoutMillis, failFast);
+        inFlight.put(requestId, request);
+        future.whenComplete((response, error) -> {
+            if (future.isCancelled()) {
+                finish(request);
+            }
+        });
+        transmit(request);
+        return future;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
 
-                // Deserialize and return the response
-                return (Response) SerializationUtil.deserialize(
-                        java.util.Arrays.copyOf(receivePacket.getData(), receivePacket.getLength())
-                );
+    // When the server last answered anything, 0 if it never did.
+    public long getLastResponseAt() {
+        return lastResponseAt;
+    }
+
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
 
-            } catch (SocketTimeoutException e) {
-                System.err.println("Server did not respond within " + SOCKET_TIMEOUT_MILLIS + "ms.");
+    private long nextRequestId() {
+        long id;
+        do {
+            id = requestIds.incrementAndGet();
+        } while (id == 0); // 0 means "no id" to the server
+        return id;
+    }
+
+    private void transmit(PendingRequest request) {
+        synchronized (request) {
+            if (request.done) {
+                return;
+            }
+            if (!send(request)) {
+                long timeout = rttEstimator.timeoutFor(request.attempts);
+                request.timeoutTask = retransmitTimer.schedule(() -> onTimeout(request, timeout),
+                        Math.min(timeout, request.remainingMillis()), TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        fail(request, unreachable()); // Outside the lock: the caller may react by cancelling other requests
+    }
+
+    // Writes the request once. Returns true if it must fail because the server port is closed.
+    private boolean send(PendingRequest request) {
+        request.attempts++;
+        request.lastSentAt = System.currentTimeMillis();
+        try {
+            channel.write(request.sendBuffer.duplicate());
+            LOG.debug("Sent command: {} to {}:{}", request.commandName, serverAddress, serverPort);
+        } catch (PortUnreachableException e) {
+            LOG.warn("Server port {} is unreachable.", serverPort);
+            return request.failFast;
+        } catch (IOException e) {
+            LOG.warn("Network error during communication: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private void onTimeout(PendingRequest request, long timeout) {
+        if (request.done) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (request.receivingChunks(now, MAX_CHUNK_GAP_MILLIS * MAX_NACK_ROUNDS)) {
+            // The response is streaming in; the receiver thread handles gaps with NACKs
+            request.timeoutTask = retransmitTimer.schedule(() -> onTimeout(request, timeout), timeout, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (request.remainingMillis() <= 1) {
+            LOG.info("Server did not respond within {}ms.", request.timeoutMillis);
+            fail(request, new SocketTimeoutException("Failed to communicate with server after " + request.attempts
+                    + " attempts in " + request.timeoutMillis + "ms. Server might be unavailable."));
+            return;
+        }
+        long sinceSent = now - request.lastSentAt;
+        if (now - lastResponseAt < timeout && sinceSent < RttEstimator.MAX_RTO_MILLIS) {
+            // Other requests are being answered, so this one is most likely queued at the server, not lost.
+            // Like TCP restarting its timer on every ACK; the old fixed timeout still bounds the wait.
+            long delay = Math.min(Math.min(timeout, RttEstimator.MAX_RTO_MILLIS - sinceSent), request.remainingMillis());
+            request.timeoutTask = retransmitTimer.schedule(() -> onTimeout(request, timeout), delay, TimeUnit.MILLISECONDS);
+            return;
+        }
+        LOG.info("Server did not respond within {}ms.", timeout);
+        LOG.info("Retrying... (attempt {})", request.attempts + 1);
+        transmit(request);
+    }
+
+    private void receiveLoop() {
+        ByteBuffer receiveBuffer = bufferPool.acquire();
+        try {
+            while (running) {
+                selector.select(chunkGap());
+                selector.selectedKeys().clear();
+                drainChannel(receiveBuffer);
+                requestMissingChunks();
+            }
+        } catch (ClosedChannelException | java.nio.channels.ClosedSelectorException e) {
+            // Client was closed
+        } catch (IOException e) {
+            if (running) {
+                LOG.error("Client receiver stopped: {}", e.getMessage());
+            }
+        } finally {
+            bufferPool.release(receiveBuffer);
+        }
+    }
+
+    private void drainChannel(ByteBuffer receiveBuffer) throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            try {
+                if (channel.receive(receiveBuffer) == null) {
+                    return;
+                }
             } catch (PortUnreachableException e) {
-                System.err.println("Server port " + serverPort + " is unreachable.");
-            } catch (IOException e) {
-                System.err.println("Network error during communication: " + e.getMessage());
-            }
-
-            if (retry < MAX_RETRIES - 1) {
-                System.out.println("Retrying... (" + (retry + 1) + "/" + MAX_RETRIES + ")");
-                try {
-                    Thread.sleep(RETRY_DELAY_MILLIS); // Wait before retrying
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Client interrupted during retry delay.", ie);
+                // ICMP from a previous send; the retransmit timer keeps retrying, except for fail-fast requests
+                LOG.warn("Server port {} is unreachable.", serverPort);
+                for (PendingRequest request : inFlight.values()) {
+                    if (request.failFast) {
+                        fail(request, unreachable());
+                    }
                 }
+                continue;
+            }
+            receiveBuffer.flip();
+            if (!ChunkProtocol.isFrame(receiveBuffer) || ChunkProtocol.frameType(receiveBuffer) != ChunkProtocol.TYPE_CHUNK) {
+                continue; // Not part of a response
+            }
+            try {
+                handleChunk(ChunkProtocol.readChunk(receiveBuffer));
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring malformed chunk: {}", e.getMessage());
+            }
+        }
+    }
+
+    // How long a chunked transfer may stay silent before the receiver asks for the missing chunks.
+    private long chunkGap() {
+        return Math.max(MIN_CHUNK_GAP_MILLIS, Math.min(MAX_CHUNK_GAP_MILLIS, 2 * rttEstimator.getSmoothedRtt()));
+    }
+
+    private void handleChunk(ChunkProtocol.Chunk chunk) {
+        PendingRequest request = inFlight.get(chunk.getRequestId());
+        if (request == null) {
+            return; // Late or duplicate answer to a request that is already completed
+        }
+        lastResponseAt = System.currentTimeMillis();
+        if (!request.answered) {
+            request.answered = true;
+            if (request.attempts == 1) {
+                // The first datagram of the answer to a request that was sent once measures the round trip
+                rttEstimator.addSample(System.currentTimeMillis() - request.lastSentAt);
             }
         }
-        throw new IOException("Failed to communicate with server after " + MAX_RETRIES + " retries. Server might be unavailable.");
+        if (chunk.getCount() == 1) {
+            // Deserialized straight from the receive buffer
+            complete(request, () -> (Response) SerializationUtil.deserialize(chunk.getPayload(), chunk.isDeflated()));
+            return;
+        }
+        ResponseAssembler assembler = request.assembler;
+        if (assembler == null || assembler.getTransferId() != chunk.getTransferId()) {
+            assembler = new ResponseAssembler(chunk);
+            request.assembler = assembler;
+        }
+        if (assembler.add(chunk)) {
+            request.lastChunkAt = System.currentTimeMillis();
+            request.nackRounds = 0;
+        }
+        if (assembler.isComplete()) {
+            byte[] payload = assembler.getPayload();
+            boolean deflated = assembler.isDeflated();
+            // Large payloads are decoded off the receiver thread so other responses keep flowing
+            CompletableFuture.runAsync(() -> complete(request,
+                    () -> (Response) SerializationUtil.deserialize(ByteBuffer.wrap(payload), deflated)));
+        }
     }
 
+    // Asks for the missing chunks of every transfer that went quiet.
+    private void requestMissingChunks() throws IOException {
+        long now = System.currentTimeMillis();
+        long gap = chunkGap();
+        int[] missing = null;
+        for (PendingRequest request : inFlight.values()) {
+            ResponseAssembler assembler = request.assembler;
+            if (assembler == null || assembler.isComplete() || now - request.lastChunkAt < gap) {
+                continue;
+            }
+            if (request.nackRounds++ >= MAX_NACK_ROUNDS) {
+                LOG.warn("Chunked response stalled, giving up on transfer {}", assembler.getTransferId());
+                request.assembler = null; // The retransmit timer will resend the command
+                continue;
+            }
+            if (missing == null) {
+                missing = new int[ChunkProtocol.MAX_NACK_INDICES];
+            }
+            int missingCount = assembler.missingChunks(missing);
+            channel.write(ChunkProtocol.encodeNack(assembler.getTransferId(), missing, missingCount));
+            request.lastChunkAt = now;
+            LOG.debug("Requested {} missing chunks.", Math.min(missingCount, ChunkProtocol.MAX_NACK_INDICES));
+        }
+    }
+
+    private void complete(PendingRequest request, ResponseDecoder decoder) {
+        Response response;
+        try {
+            response = decoder.decode();
+        } catch (IOException | ClassNotFoundException e) {
+            fail(request, e);
+            return;
+        }
+        if (response.getRetryAfterMillis() > 0 && retryLater(request, response.getRetryAfterMillis())) {
+            return;
+        }
+        if (finish(request)) {
+            LOG.debug("Received response from server.");
+            request.future.complete(response);
+        }
+    }
+
+    // The server shed the request; send it again once the suggested delay (plus some jitter) has passed.
+    // Returns false if the request is too old to be retried, in which case the busy response is the answer.
+    private boolean retryLater(PendingRequest request, long retryAfterMillis) {
+        long delay = retryAfterMillis + ThreadLocalRandom.current().nextLong(retryAfterMillis / 4 + 1);
+        synchronized (request) {
+            if (request.done || delay >= request.remainingMillis()) {
+                return false;
+            }
+            if (request.timeoutTask != null) {
+                request.timeoutTask.cancel(false);
+            }
+            request.answered = false;
+            request.assembler = null;
+            LOG.debug("Server busy, retrying {} in {} ms", request.commandName, delay);
+            request.timeoutTask = retransmitTimer.schedule(() -> transmit(request), delay, TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+
+    private PortUnreachableException unreachable() {
+        return new PortUnreachableException("Server port " + serverAddress.getHostAddress() + ":" + serverPort + " is unreachable.");
+    }
+
+    private void fail(PendingRequest request, Throwable error) {
+        if (finish(request)) {
+            request.future.completeExceptionally(error);
+        }
+    }
+
+    // Removes the request from the in-flight table exactly once and frees its resources.
+    private boolean finish(PendingRequest request) {
+        synchronized (request) {
+            if (request.done) {
+                return false;
+            }
+            request.done = true;
+            if (request.timeoutTask != null) {
+                request.timeoutTask.cancel(false);
+            }
+        }
+        inFlight.remove(request.requestId);
+        bufferPool.release(request.sendBuffer);
+        window.release();
+        return true;
+    }
+
+    @Override
     public void close() {
-        if (clientSocket != null && !clientSocket.isClosed()) {
-            clientSocket.close();
-            System.out.println("Client socket closed.");
+        running = false;
+        retransmitTimer.shutdownNow();
+        for (PendingRequest request : inFlight.values()) {
+            fail(request, new IOException("Client is closed."));
+        }
+        try {
+            selector.close();
+            if (channel.isOpen()) {
+                channel.close();
+                LOG.debug("Client socket closed.");
+            }
+        } catch (IOException e) {
+            LOG.warn("Error closing client socket: {}", e.getMessage());
+        }
+    }
+
+    private interface ResponseDecoder {
+        Response decode() throws IOException, ClassNotFoundException;
+    }
+
+    // State of one outstanding request. Chunk fields are only touched by the receiver thread.
+    private static final class PendingRequest {
+        private final long requestId;
+        private final String commandName;
+        private final ByteBuffer sendBuffer;
+        private final CompletableFuture<Response> future;
+        private final long createdAt = System.currentTimeMillis();
+        private int attempts;
+        private volatile long lastSentAt;
+        private boolean done;
+        private boolean answered; // Receiver thread only
+        private ScheduledFuture<?> timeoutTask;
+        private volatile ResponseAssembler assembler;
+        private volatile long lastChunkAt;
+        private int nackRounds;
+
+        private final long timeoutMillis;
+        private final boolean failFast; // Give up as soon as the server port is reported unreachable
+
+        private PendingRequest(long requestId, String commandName, ByteBuffer sendBuffer, CompletableFuture<Response> future,
+                               long timeoutMillis, boolean failFast) {
+            this.requestId = requestId;
+            this.commandName = commandName;
+            this.sendBuffer = sendBuffer;
+            this.future = future;
+            this.timeoutMillis = timeoutMillis;
+            this.failFast = failFast;
+        }
+
+        private long remainingMillis() {
+            return Math.max(1, createdAt + timeoutMillis - System.currentTimeMillis());
+        }
+
+        private boolean receivingChunks(long now, long maxSilence) {
+            return assembler != null && now - lastChunkAt < maxSilence;
         }
     }
-}
\ No newline at end of file
+}
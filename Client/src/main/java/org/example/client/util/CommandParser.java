@@ -1,26 +1,33 @@
 package org.example.client.util;
 
-import org.example.client.network.UDPClient;
+import org.example.client.network.CommandClient;
 import org.example.common.command.*;
 import org.example.common.data.Person;
 import org.example.common.response.Response;
+import org.example.common.util.SerializationUtil;
 
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class CommandParser {
 
     private final IOService ioService;
     private final PersonIOService personIOService;
-    private final UDPClient client;
+    private final CommandClient client;
     private final Set<String> executingScripts = new HashSet<>(); //For recursion detection
+    // Commands that only read the collection; batches made only of these are sent without waiting for each answer
+    private static final Set<String> READ_ONLY_COMMANDS = Set.of(
+            "help", "info", "show", "count_by_location", "average_of_height", "max_by_id", "stats");
 
-    public CommandParser(IOService ioService, UDPClient client) {
+    public CommandParser(IOService ioService, CommandClient client) {
         this.ioService = ioService;
         this.client = client;
         this.personIOService = new PersonIOService(ioService);
@@ -80,6 +87,8 @@ public class CommandParser {
                 return new RemoveLowerCommand(arg, removeLowerPerson);
             case "history":
                 return new HistoryCommand(arg);
+            case "stats":
+                return new StatsCommand(arg);
             case "max_by_id":
                 return new MaxByIdCommand(arg);
             case "average_of_height":
@@ -104,6 +113,8 @@ public class CommandParser {
         try {
             executingScripts.add(filePath);
             List<String> scriptLines = Files.readAllLines(Path.of(filePath));
+            ScriptBatch batch = new ScriptBatch();
+            List<PendingBatch> pipelined = new ArrayList<>();
             int lineIndex = 0;
 
             while(lineIndex < scriptLines.size()){
@@ -160,17 +171,125 @@ public class CommandParser {
                     }
 
                     if (cmdFromScript instanceof ExecuteScriptCommand || cmdFromScript instanceof ExitCommand) {
+                        sendBatch(batch, pipelined);
+                        printPipelined(pipelined);
                         runLocalCommand(cmdFromScript);
-                    } else {
-                        Response response = client.sendAndReceive(cmdFromScript);
-                        ioService.print("Server Response for '" + line + "': " + response.getMessage());
+                        continue;
                     }
+                    int size = SerializationUtil.serialize(cmdFromScript, client.getWireFormat()).length;
+                    if (!batch.fits(size)) {
+                        sendBatch(batch, pipelined);
+                    }
+                    batch.add(line, lineIndex, cmdFromScript, size, READ_ONLY_COMMANDS.contains(commandName));
                 } catch (Exception e) {
+                    sendBatch(batch, pipelined);
+                    printPipelined(pipelined);
                     ioService.print("Error in script at line " + lineIndex + ": " + e.getMessage());
                 }
             }
+            sendBatch(batch, pipelined);
+            printPipelined(pipelined);
         } finally {
             executingScripts.remove(filePath);
         }
     }
+
+    // Sends the collected commands as one datagram and starts a new batch.
+    // Read-only batches are pipelined; a batch that may change the collection waits for everything sent before it
+    // and is answered before the next one goes out, so the script sees its own writes in order.
+    private void sendBatch(ScriptBatch batch, List<PendingBatch> pipelined) {
+        if (batch.commands.isEmpty()) {
+            return;
+        }
+        ScriptBatch sent = batch.copyAndClear();
+        Command command = sent.commands.size() == 1 ? sent.commands.get(0) : new BatchCommand(sent.commands);
+        if (!sent.readOnly) {
+            printPipelined(pipelined);
+        }
+        pipelined.add(new PendingBatch(sent, client.sendAsync(command)));
+        if (!sent.readOnly) {
+            printPipelined(pipelined);
+        }
+    }
+
+    // Waits for the pipelined batches and prints their answers in script order.
+    private void printPipelined(List<PendingBatch> pipelined) {
+        for (PendingBatch pending : pipelined) {
+            ScriptBatch batch = pending.batch;
+            try {
+                Response response = pending.response.get();
+                if (batch.commands.size() == 1) {
+                    ioService.print("Server Response for '" + batch.lines.get(0) + "': " + response.getMessage());
+                } else if (response.getData() instanceof List) {
+                    List<?> responses = (List<?>) response.getData();
+                    for (int i = 0; i < batch.lines.size() && i < responses.size(); i++) {
+                        ioService.print("Server Response for '" + batch.lines.get(i) + "': "
+                                + ((Response) responses.get(i)).getMessage());
+                    }
+                } else {
+                    for (int i = 0; i < batch.lines.size(); i++) {
+                        ioService.print("Error in script at line " + batch.lineIndexes.get(i) + ": " + response.getMessage());
+                    }
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                String message = e instanceof ExecutionException ? e.getCause().getMessage() : "interrupted";
+                for (int i = 0; i < batch.lines.size(); i++) {
+                    ioService.print("Error in script at line " + batch.lineIndexes.get(i) + ": " + message);
+                }
+            }
+        }
+        pipelined.clear();
+    }
+
+    // Consecutive script commands that will travel in one BatchCommand.
+    private static final class ScriptBatch {
+        private List<String> lines = new ArrayList<>();
+        private List<Integer> lineIndexes = new ArrayList<>();
+        private List<Command> commands = new ArrayList<>();
+        private int bytes;
+        private boolean readOnly = true;
+
+        // The serialized sizes of the single commands overestimate the batch, which shares class descriptors (Java)
+        // or at least the version byte (binary).
+        private boolean fits(int size) {
+            return commands.isEmpty()
+                    || (commands.size() < BatchCommand.MAX_COMMANDS && bytes + size <= BatchCommand.MAX_BATCH_BYTES);
+        }
+
+        private void add(String line, int lineIndex, Command command, int size, boolean readOnlyCommand) {
+            lines.add(line);
+            lineIndexes.add(lineIndex);
+            commands.add(command);
+            bytes += size;
+            readOnly &= readOnlyCommand;
+        }
+
+        private ScriptBatch copyAndClear() {
+            ScriptBatch copy = new ScriptBatch();
+            copy.lines = lines;
+            copy.lineIndexes = lineIndexes;
+            copy.commands = commands;
+            copy.bytes = bytes;
+            copy.readOnly = readOnly;
+            lines = new ArrayList<>();
+            lineIndexes = new ArrayList<>();
+            commands = new ArrayList<>();
+            bytes = 0;
+            readOnly = true;
+            return copy;
+        }
+    }
+
+    private static final class PendingBatch {
+        private final ScriptBatch batch;
+        private final CompletableFuture<Response> response;
+
+        private PendingBatch(ScriptBatch batch, CompletableFuture<Response> response) {
+            this.batch = batch;
+            this.response = response;
+        }
+    }
 }
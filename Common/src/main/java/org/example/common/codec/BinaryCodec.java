@@ -0,0 +1,515 @@
+package org.example.common.codec;
+
+import org.example.common.command.*;
+import org.example.common.data.Coordinates;
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+import org.example.common.response.HeightStats;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
+import org.example.common.response.Response;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/* Hand-written encoding of the command DTOs, Response and the values they carry.
+ Layout: one version byte, then a tagged value. A command is TAG_COMMAND, a one-byte opcode, the request id,
+ the accepted encodings and the argument, followed by the Person or the nested commands where the command has them.
+ Integers are varints (zigzag where they may be negative), enums their ordinal + 1 (0 is null), strings are
+ UTF-8 with their length + 1 (0 is null). Person and location names go through a per-message dictionary
+ (WireWriter.writeDictionaryString), so a name that repeats across a show response is sent once.
+ Nothing is instantiated by name, so decoding a datagram can only produce the types listed here.
+ Opcodes and tags are part of the protocol: never renumber them, only append. A change to the layout of an
+ existing type needs a new VERSION; decoders reject versions they do not know.
+ */
+public final class BinaryCodec {
+    // First byte of every payload; Java serialization starts with 0xAC. 2 added the name dictionary.
+    public static final int VERSION = 2;
+    public static final int ENCODING_BINARY = 2; // Command.acceptedEncodings bit: the client reads binary responses
+    private static final int MAX_DEPTH = 4; // Response > batch list > Response > person list
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_COMMAND = 1;
+    private static final int TAG_RESPONSE = 2;
+    private static final int TAG_PERSON = 3;
+    private static final int TAG_LIST = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_INT = 6;
+    private static final int TAG_LONG = 7;
+    private static final int TAG_DOUBLE = 8;
+    private static final int TAG_BOOLEAN = 9;
+    private static final int TAG_PERSON_PAGE = 10;
+    private static final int TAG_HEIGHT_STATS = 11;
+    private static final int TAG_LOCATION = 12;
+    private static final int TAG_PERSON_DELTA = 13;
+
+    private static final int OP_HELP = 1;
+    private static final int OP_INFO = 2;
+    private static final int OP_SHOW = 3;
+    private static final int OP_ADD = 4;
+    private static final int OP_UPDATE = 5;
+    private static final int OP_REMOVE_BY_ID = 6;
+    private static final int OP_CLEAR = 7;
+    private static final int OP_SAVE = 8;
+    private static final int OP_EXECUTE_SCRIPT = 9;
+    private static final int OP_EXIT = 10;
+    private static final int OP_ADD_IF_MAX = 11;
+    private static final int OP_REMOVE_LOWER = 12;
+    private static final int OP_HISTORY = 13;
+    private static final int OP_MAX_BY_ID = 14;
+    private static final int OP_AVERAGE_OF_HEIGHT = 15;
+    private static final int OP_COUNT_BY_LOCATION = 16;
+    private static final int OP_STATS = 17;
+    private static final int OP_BATCH = 18;
+
+    private static final Map<Class<?>, Integer> OPCODES = Map.ofEntries(
+            Map.entry(HelpCommand.class, OP_HELP),
+            Map.entry(InfoCommand.class, OP_INFO),
+            Map.entry(ShowCommand.class, OP_SHOW),
+            Map.entry(AddCommand.class, OP_ADD),
+            Map.entry(UpdateCommand.class, OP_UPDATE),
+            Map.entry(RemoveByIdCommand.class, OP_REMOVE_BY_ID),
+            Map.entry(ClearCommand.class, OP_CLEAR),
+            Map.entry(SaveCommand.class, OP_SAVE),
+            Map.entry(ExecuteScriptCommand.class, OP_EXECUTE_SCRIPT),
+            Map.entry(ExitCommand.class, OP_EXIT),
+            Map.entry(AddIfMaxCommand.class, OP_ADD_IF_MAX),
+            Map.entry(RemoveLowerCommand.class, OP_REMOVE_LOWER),
+            Map.entry(HistoryCommand.class, OP_HISTORY),
+            Map.entry(MaxByIdCommand.class, OP_MAX_BY_ID),
+            Map.entry(AverageOfHeightCommand.class, OP_AVERAGE_OF_HEIGHT),
+            Map.entry(CountByLocationCommand.class, OP_COUNT_BY_LOCATION),
+            Map.entry(StatsCommand.class, OP_STATS),
+            Map.entry(BatchCommand.class, OP_BATCH));
+
+    private static final String[] CLASS_NAMES = new String[OP_BATCH + 1]; // By opcode
+
+    static {
+        OPCODES.forEach((type, opcode) -> CLASS_NAMES[opcode] = type.getName());
+    }
+
+    private static final EyeColor[] EYE_COLORS = EyeColor.values();
+    private static final HairColor[] HAIR_COLORS = HairColor.values();
+    private static final Country[] COUNTRIES = Country.values();
+
+    private BinaryCodec() {
+    }
+
+    // True if the payload at the buffer's position is in this format rather than Java serialization.
+    public static boolean isBinary(ByteBuffer source) {
+        return source.hasRemaining() && source.get(source.position()) == VERSION;
+    }
+
+    // Throws NotSerializableException for values this codec has no encoding for; callers fall back to Java
+    // serialization then.
+    public static byte[] encode(Object value) throws IOException {
+        return write(value).toByteArray();
+    }
+
+    public static void encode(Object value, OutputStream out) throws IOException {
+        WireWriter writer = write(value);
+        out.write(writer.array(), 0, writer.size());
+    }
+
+    // Encodes directly into the buffer, starting at its position. Fails if the value does not fit.
+    public static void encode(Object value, ByteBuffer target) throws IOException {
+        WireWriter writer = write(value);
+        if (writer.size() > target.remaining()) {
+            throw new IOException("Encoded object (" + writer.size() + " bytes) does not fit into "
+                    + target.remaining() + " bytes.");
+        }
+        writer.copyTo(target);
+    }
+
+    // Decodes the remaining bytes of the buffer.
+    public static Object decode(ByteBuffer source) throws IOException {
+        try {
+            WireReader reader = new WireReader(source);
+            int version = reader.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported wire format version " + version + ".");
+            }
+            Object value = readValue(reader, 0);
+            if (reader.hasRemaining()) {
+                throw new IOException("Unexpected bytes after the encoded object.");
+            }
+            return value;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed payload: " + e.getMessage(), e);
+        }
+    }
+
+    // Class name of the command at the buffer's position without decoding it, or null if it is not a binary
+    // command. Lets the admission control classify binary and Java-serialized commands alike.
+    public static String peekClassName(ByteBuffer source) {
+        int start = source.position();
+        if (source.remaining() < 3 || source.get(start) != VERSION || source.get(start + 1) != TAG_COMMAND) {
+            return null;
+        }
+        int opcode = source.get(start + 2);
+        return opcode > 0 && opcode < CLASS_NAMES.length ? CLASS_NAMES[opcode] : null;
+    }
+
+    private static WireWriter write(Object value) throws IOException {
+        WireWriter writer = new WireWriter(256);
+        writer.writeByte(VERSION);
+        writeValue(writer, value, 0);
+        return writer;
+    }
+
+    private static void writeValue(WireWriter writer, Object value, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new NotSerializableException("Value nested deeper than " + MAX_DEPTH + " levels.");
+        }
+        if (value == null) {
+            writer.writeByte(TAG_NULL);
+        } else if (value instanceof Command) {
+            writer.writeByte(TAG_COMMAND);
+            writeCommand(writer, (Command) value);
+        } else if (value instanceof Response) {
+            writer.writeByte(TAG_RESPONSE);
+            Response response = (Response) value;
+            writer.writeBoolean(response.isSuccess());
+            writer.writeString(response.getMessage());
+            writer.writeVarLong(response.getRequestId());
+            writer.writeVarLong(response.getRetryAfterMillis());
+            writeValue(writer, response.getData(), depth + 1);
+        } else if (value instanceof Person) {
+            writer.writeByte(TAG_PERSON);
+            writePerson(writer, (Person) value);
+        } else if (value instanceof List) {
+            writer.writeByte(TAG_LIST);
+            List<?> list = (List<?>) value;
+            writer.writeVarInt(list.size());
+            for (Object item : list) {
+                writeValue(writer, item, depth + 1);
+            }
+        } else if (value instanceof String) {
+            writer.writeByte(TAG_STRING);
+            writer.writeString((String) value);
+        } else if (value instanceof Integer) {
+            writer.writeByte(TAG_INT);
+            writer.writeSignedVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            writer.writeByte(TAG_LONG);
+            writer.writeSignedVarLong((Long) value);
+        } else if (value instanceof Double) {
+            writer.writeByte(TAG_DOUBLE);
+            writer.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            writer.writeByte(TAG_BOOLEAN);
+            writer.writeBoolean((Boolean) value);
+        } else if (value instanceof PersonPage) {
+            writer.writeByte(TAG_PERSON_PAGE);
+            PersonPage page = (PersonPage) value;
+            writer.writeVarInt(page.getPersons().size());
+            for (Person person : page.getPersons()) {
+                writePerson(writer, person);
+            }
+            writer.writeString(page.getNextCursor());
+            writer.writeVarInt(page.getTotalCount());
+        } else if (value instanceof HeightStats) {
+            writer.writeByte(TAG_HEIGHT_STATS);
+            HeightStats stats = (HeightStats) value;
+            writer.writeDouble(stats.getSum());
+            writer.writeVarLong(stats.getCount());
+            writer.writeDouble(stats.getMax());
+        } else if (value instanceof Location) {
+            writer.writeByte(TAG_LOCATION);
+            writeLocation(writer, (Location) value);
+        } else if (value instanceof PersonDelta) {
+            writer.writeByte(TAG_PERSON_DELTA);
+            PersonDelta delta = (PersonDelta) value;
+            writer.writeString(delta.getSyncToken());
+            writer.writeBoolean(delta.isFullResync());
+            writer.writeVarInt(delta.getChanged().size());
+            for (Person person : delta.getChanged()) {
+                writePerson(writer, person);
+            }
+            writer.writeVarInt(delta.getRemovedIds().size());
+            for (Integer id : delta.getRemovedIds()) {
+                writer.writeNullableInt(id);
+            }
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(WireReader reader, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Value nested deeper than " + MAX_DEPTH + " levels.");
+        }
+        int tag = reader.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_COMMAND:
+                return readCommand(reader, depth);
+            case TAG_RESPONSE: {
+                boolean success = reader.readBoolean();
+                String message = reader.readString();
+                long requestId = reader.readVarLong();
+                long retryAfterMillis = reader.readVarLong();
+                Response response = new Response(message, success, readValue(reader, depth + 1));
+                response.setRequestId(requestId);
+                response.setRetryAfterMillis(retryAfterMillis);
+                return response;
+            }
+            case TAG_PERSON:
+                return readPerson(reader);
+            case TAG_LIST: {
+                int size = reader.readCount();
+                ArrayList<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(reader, depth + 1));
+                }
+                return list;
+            }
+            case TAG_STRING:
+                return reader.readString();
+            case TAG_INT: {
+                long value = reader.readSignedVarLong();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new IOException("Value out of int range: " + value);
+                }
+                return (int) value;
+            }
+            case TAG_LONG:
+                return reader.readSignedVarLong();
+            case TAG_DOUBLE:
+                return reader.readDouble();
+            case TAG_BOOLEAN:
+                return reader.readBoolean();
+            case TAG_PERSON_PAGE: {
+                int size = reader.readCount();
+                List<Person> persons = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    persons.add(readPerson(reader));
+                }
+                return new PersonPage(persons, reader.readString(), reader.readVarInt());
+            }
+            case TAG_HEIGHT_STATS:
+                return new HeightStats(reader.readDouble(), reader.readVarLong(), reader.readDouble());
+            case TAG_LOCATION:
+                return readLocation(reader);
+            case TAG_PERSON_DELTA: {
+                String syncToken = reader.readString();
+                boolean fullResync = reader.readBoolean();
+                int changedCount = reader.readCount();
+                List<Person> changed = new ArrayList<>(changedCount);
+                for (int i = 0; i < changedCount; i++) {
+                    changed.add(readPerson(reader));
+                }
+                int removedCount = reader.readCount();
+                List<Integer> removedIds = new ArrayList<>(removedCount);
+                for (int i = 0; i < removedCount; i++) {
+                    removedIds.add(reader.readNullableInt());
+                }
+                return new PersonDelta(syncToken, fullResync, changed, removedIds);
+            }
+            default:
+                throw new IOException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    private static void writeCommand(WireWriter writer, Command command) throws IOException {
+        Integer opcode = OPCODES.get(command.getClass());
+        if (opcode == null) {
+            throw new NotSerializableException(command.getClass().getName());
+        }
+        writer.writeByte(opcode);
+        writer.writeVarLong(command.getRequestId());
+        writer.writeVarInt(command.getAcceptedEncodings());
+        if (command instanceof BatchCommand) {
+            List<Command> commands = ((BatchCommand) command).getCommands();
+            writer.writeVarInt(commands.size());
+            for (Command inner : commands) {
+                if (inner instanceof BatchCommand) {
+                    throw new NotSerializableException("Nested batches are not supported.");
+                }
+                writeCommand(writer, inner);
+            }
+            return;
+        }
+        writer.writeString(command.getArg());
+        if (command instanceof AddCommand) {
+            writeNullablePerson(writer, ((AddCommand) command).getPerson());
+        } else if (command instanceof AddIfMaxCommand) {
+            writeNullablePerson(writer, ((AddIfMaxCommand) command).getPerson());
+        } else if (command instanceof UpdateCommand) {
+            writeNullablePerson(writer, ((UpdateCommand) command).getPerson());
+        } else if (command instanceof RemoveLowerCommand) {
+            writeNullablePerson(writer, ((RemoveLowerCommand) command).getPerson());
+        }
+    }
+
+    private static Command readCommand(WireReader reader, int depth) throws IOException {
+        int opcode = reader.readByte();
+        long requestId = reader.readVarLong();
+        int acceptedEncodings = reader.readVarInt();
+        Command command;
+        if (opcode == OP_BATCH) {
+            if (depth > 0) {
+                throw new IOException("Nested batches are not supported.");
+            }
+            int size = reader.readCount();
+            List<Command> commands = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                commands.add(readCommand(reader, depth + 1));
+            }
+            command = new BatchCommand(commands);
+        } else {
+            String arg = reader.readString();
+            if (arg == null) {
+                throw new IOException("Command without argument string.");
+            }
+            command = newCommand(opcode, arg, reader);
+        }
+        command.setRequestId(requestId);
+        command.setAcceptedEncodings(acceptedEncodings);
+        return command;
+    }
+
+    private static Command newCommand(int opcode, String arg, WireReader reader) throws IOException {
+        switch (opcode) {
+            case OP_HELP:
+                return new HelpCommand(arg);
+            case OP_INFO:
+                return new InfoCommand(arg);
+            case OP_SHOW:
+                return new ShowCommand(arg);
+            case OP_ADD:
+                return new AddCommand(arg, readNullablePerson(reader));
+            case OP_UPDATE:
+                return new UpdateCommand(arg, readNullablePerson(reader));
+            case OP_REMOVE_BY_ID:
+                return new RemoveByIdCommand(arg);
+            case OP_CLEAR:
+                return new ClearCommand(arg);
+            case OP_SAVE:
+                return new SaveCommand(arg);
+            case OP_EXECUTE_SCRIPT:
+                return new ExecuteScriptCommand(arg);
+            case OP_EXIT:
+                return new ExitCommand(arg);
+            case OP_ADD_IF_MAX:
+                return new AddIfMaxCommand(arg, readNullablePerson(reader));
+            case OP_REMOVE_LOWER:
+                return new RemoveLowerCommand(arg, readNullablePerson(reader));
+            case OP_HISTORY:
+                return new HistoryCommand(arg);
+            case OP_MAX_BY_ID:
+                return new MaxByIdCommand(arg);
+            case OP_AVERAGE_OF_HEIGHT:
+                return new AverageOfHeightCommand(arg);
+            case OP_COUNT_BY_LOCATION:
+                return new CountByLocationCommand(arg);
+            case OP_STATS:
+                return new StatsCommand(arg);
+            default:
+                throw new IOException("Unknown command opcode " + opcode + ".");
+        }
+    }
+
+    private static void writeNullablePerson(WireWriter writer, Person person) {
+        writer.writeBoolean(person != null);
+        if (person != null) {
+            writePerson(writer, person);
+        }
+    }
+
+    private static Person readNullablePerson(WireReader reader) throws IOException {
+        return reader.readBoolean() ? readPerson(reader) : null;
+    }
+
+    private static void writePerson(WireWriter writer, Person person) {
+        writer.writeNullableInt(person.getId());
+        writer.writeDictionaryString(person.getName());
+        Coordinates coordinates = person.getCoordinates();
+        writer.writeBoolean(coordinates != null);
+        if (coordinates != null) {
+            writer.writeNullableInt(coordinates.getX());
+            writer.writeDouble(coordinates.getY());
+        }
+        LocalDateTime creationDate = person.getCreationDate();
+        writer.writeBoolean(creationDate != null);
+        if (creationDate != null) {
+            writer.writeSignedVarLong(creationDate.toEpochSecond(ZoneOffset.UTC));
+            writer.writeVarInt(creationDate.getNano());
+        }
+        Double height = person.getHeight();
+        writer.writeBoolean(height != null);
+        if (height != null) {
+            writer.writeDouble(height);
+        }
+        writer.writeVarInt(person.getEyeColor() == null ? 0 : person.getEyeColor().ordinal() + 1);
+        writer.writeVarInt(person.getHairColor() == null ? 0 : person.getHairColor().ordinal() + 1);
+        writer.writeVarInt(person.getNationality() == null ? 0 : person.getNationality().ordinal() + 1);
+        Location location = person.getLocation();
+        writer.writeBoolean(location != null);
+        if (location != null) {
+            writeLocation(writer, location);
+        }
+    }
+
+    // Through the full constructor: the no-arg one would fetch the current time for a date that is overwritten anyway.
+    private static Person readPerson(WireReader reader) throws IOException {
+        Integer id = reader.readNullableInt();
+        String name = reader.readDictionaryString();
+        Coordinates coordinates = reader.readBoolean()
+                ? new Coordinates(reader.readNullableInt(), reader.readDouble()) : null;
+        LocalDateTime creationDate = null;
+        if (reader.readBoolean()) {
+            long epochSecond = reader.readSignedVarLong();
+            int nano = reader.readVarInt();
+            try {
+                creationDate = LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+            } catch (DateTimeException e) {
+                throw new IOException("Malformed creation date: " + e.getMessage(), e);
+            }
+        }
+        Double height = reader.readBoolean() ? reader.readDouble() : null;
+        EyeColor eyeColor = enumValue(EYE_COLORS, reader.readVarInt());
+        HairColor hairColor = enumValue(HAIR_COLORS, reader.readVarInt());
+        Country nationality = enumValue(COUNTRIES, reader.readVarInt());
+        Location location = reader.readBoolean() ? readLocation(reader) : null;
+        return new Person(id, name, coordinates, creationDate, height, eyeColor, hairColor, nationality, location);
+    }
+
+    private static void writeLocation(WireWriter writer, Location location) {
+        writer.writeFloat(location.getX());
+        writer.writeBoolean(location.getY() != null);
+        if (location.getY() != null) {
+            writer.writeFloat(location.getY());
+        }
+        writer.writeDictionaryString(location.getName());
+    }
+
+    private static Location readLocation(WireReader reader) throws IOException {
+        float x = reader.readFloat();
+        Float y = reader.readBoolean() ? reader.readFloat() : null;
+        return new Location(x, y, reader.readDictionaryString());
+    }
+
+    private static <E> E enumValue(E[] values, int ordinalPlusOne) throws IOException {
+        if (ordinalPlusOne == 0) {
+            return null;
+        }
+        if (ordinalPlusOne < 0 || ordinalPlusOne > values.length) {
+            throw new IOException("Unknown enum ordinal " + (ordinalPlusOne - 1) + ".");
+        }
+        return values[ordinalPlusOne - 1];
+    }
+}
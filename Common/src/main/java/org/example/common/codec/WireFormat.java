@@ -0,0 +1,25 @@
+package org.example.common.codec;
+
+import java.util.Locale;
+
+// How commands and responses are encoded on the wire. Both sides read both formats: the first byte of a
+// payload tells them apart, and a client announces that it can read BINARY responses in Command.acceptedEncodings.
+public enum WireFormat {
+    JAVA, // ObjectOutputStream, kept for old clients and as the fallback for values BinaryCodec does not know
+    BINARY; // BinaryCodec
+
+    public static WireFormat fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return BINARY;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "binary":
+                return BINARY;
+            case "java":
+            case "serialization":
+                return JAVA;
+            default:
+                throw new IllegalArgumentException("Unknown wire format: " + value + " (expected binary or java)");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.common.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads what WireWriter wrote. Every length is checked against the bytes that are actually there, so a forged
+// datagram cannot make the reader allocate more than the datagram itself.
+final class WireReader {
+    private final ByteBuffer source;
+    private List<String> dictionary; // Entries of WireWriter.writeDictionaryString, in the order they were written
+
+    WireReader(ByteBuffer source) {
+        this.source = source;
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return source.get() & 0xFF;
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value > 0xFFFFFFFFL || value < 0) {
+            throw new IOException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    long readSignedVarLong() throws IOException {
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    Integer readNullableInt() throws IOException {
+        long raw = readVarLong();
+        if (raw == 0) {
+            return null;
+        }
+        raw--;
+        long value = (raw >>> 1) ^ -(raw & 1);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    double readDouble() throws IOException {
+        require(8);
+        return source.getDouble();
+    }
+
+    float readFloat() throws IOException {
+        require(4);
+        return source.getFloat();
+    }
+
+    boolean readBoolean() throws IOException {
+        int value = readByte();
+        if (value > 1) {
+            throw new IOException("Malformed boolean: " + value);
+        }
+        return value == 1;
+    }
+
+    String readString() throws IOException {
+        int lengthPlusOne = readVarInt();
+        if (lengthPlusOne == 0) {
+            return null;
+        }
+        return readUtf8(lengthPlusOne - 1);
+    }
+
+    // A repeated string is returned as the same instance every time, so a large response does not allocate a copy
+    // of every location name.
+    String readDictionaryString() throws IOException {
+        long header = readVarLong();
+        if (header == 0) {
+            return null;
+        }
+        if ((header & 1) != 0) {
+            long index = header >>> 1;
+            if (dictionary == null || index >= dictionary.size()) {
+                throw new IOException("Unknown dictionary entry " + index + ".");
+            }
+            return dictionary.get((int) index);
+        }
+        long length = (header >>> 1) - 1;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("String length out of range: " + length);
+        }
+        String value = readUtf8((int) length);
+        if (dictionary == null) {
+            dictionary = new ArrayList<>();
+        }
+        dictionary.add(value); // Every entry took at least one byte, so the dictionary is bounded by the payload
+        return value;
+    }
+
+    private String readUtf8(int length) throws IOException {
+        require(length);
+        if (source.hasArray()) {
+            String value = new String(source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8);
+            source.position(source.position() + length);
+            return value;
+        }
+        byte[] utf8 = new byte[length];
+        source.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Element counts are bounded by the remaining bytes: every element takes at least one byte
+    int readCount() throws IOException {
+        int count = readVarInt();
+        if (count < 0 || count > source.remaining()) {
+            throw new IOException("Element count " + count + " exceeds the payload.");
+        }
+        return count;
+    }
+
+    boolean hasRemaining() {
+        return source.hasRemaining();
+    }
+
+    private void require(int length) throws IOException {
+        if (length < 0 || source.remaining() < length) {
+            throw new IOException("Truncated payload: " + length + " bytes expected, " + source.remaining() + " left.");
+        }
+    }
+}
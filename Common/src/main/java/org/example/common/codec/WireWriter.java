@@ -0,0 +1,142 @@
+package org.example.common.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Growable byte array with the primitive encodings of BinaryCodec: unsigned LEB128 varints, zigzag for signed
+// values, big-endian IEEE floats and length-prefixed UTF-8 strings.
+final class WireWriter {
+    private byte[] bytes;
+    private int size;
+    private Map<String, Integer> dictionary; // Strings already written by writeDictionaryString, by index
+
+    WireWriter(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    // Small negative numbers stay short: 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
+    void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    // 0 for null, otherwise the zigzag value + 1
+    void writeNullableInt(Integer value) {
+        writeVarLong(value == null ? 0 : ((((long) value) << 1) ^ (((long) value) >> 63)) + 1);
+    }
+
+    void writeDouble(double value) {
+        writeFixedLong(Double.doubleToRawLongBits(value));
+    }
+
+    void writeFloat(float value) {
+        ensure(4);
+        int bits = Float.floatToRawIntBits(value);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            bytes[size++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    // Length + 1 (0 for null), then UTF-8.
+    void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeUtf8(value, 0);
+    }
+
+    // For strings that repeat within a message, such as the location names of a show response: the first
+    // occurrence is written in full and gets the next index of this writer's dictionary, later ones only refer to it.
+    // Header: 0 for null, index * 2 + 1 for a reference, (length + 1) * 2 followed by UTF-8 for a new entry.
+    void writeDictionaryString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        if (dictionary == null) {
+            dictionary = new HashMap<>();
+        }
+        Integer index = dictionary.putIfAbsent(value, dictionary.size());
+        if (index != null) {
+            writeVarLong(((long) index << 1) | 1);
+        } else {
+            writeUtf8(value, 1);
+        }
+    }
+
+    // The length + 1, shifted left, then the bytes. ASCII, the common case, is copied char by char without an encoder.
+    private void writeUtf8(String value, int headerShift) {
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            writeVarLong((length + 1L) << headerShift);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong((utf8.length + 1L) << headerShift);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    private void writeFixedLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    void copyTo(ByteBuffer target) {
+        target.put(bytes, 0, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.common.command;
+
+import org.example.common.network.ChunkProtocol;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+// Envelope for several commands sent in one datagram (used by execute_script).
+// The server executes them in order and answers with one Response whose data is a List<Response>, one per command.
+public class BatchCommand extends Command implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final int MAX_COMMANDS = 256; // Keeps one batch from holding a worker for too long
+    public static final int MAX_BATCH_BYTES = ChunkProtocol.MAX_DATAGRAM_SIZE - 1024; // Room for the envelope itself
+
+    private final ArrayList<Command> commands;
+
+    public BatchCommand(List<Command> commands) {
+        super("batch");
+        this.commands = new ArrayList<>(commands);
+    }
+
+    public List<Command> getCommands() {
+        return commands;
+    }
+}
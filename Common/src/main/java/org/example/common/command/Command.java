@@ -11,6 +11,8 @@ public abstract class Command implements Serializable {
     private static final long serialVersionUID = 1L;
     private final String name;
     private final String arg;
+    private long requestId; // Set by the client before sending, identifies retransmissions of the same request
+    private int acceptedEncodings; // Response encodings the client can decode (CompressionUtil.ENCODING_*, BinaryCodec.ENCODING_BINARY)
 
     public Command(String name, String arg) {
         this.name = name;
@@ -29,6 +31,22 @@ public abstract class Command implements Serializable {
         return arg;
     }
 
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public int getAcceptedEncodings() {
+        return acceptedEncodings;
+    }
+
+    public void setAcceptedEncodings(int acceptedEncodings) {
+        this.acceptedEncodings = acceptedEncodings;
+    }
+
     public String getDescription() {
         return "No description available.";
     }
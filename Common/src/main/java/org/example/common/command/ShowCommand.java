@@ -2,10 +2,24 @@ package org.example.common.command;
 
 import java.io.Serializable;
 
+// "show" returns the whole collection; "show pageSize [cursor]" returns one PersonPage;
+// "show since [token]" returns a PersonDelta with what changed since the token of an earlier one.
 public class ShowCommand extends Command implements Serializable {
     private static final long serialVersionUID = 1L;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String SINCE = "since";
 
     public ShowCommand(String arg) {
         super("show", arg);
     }
-}
\ No newline at end of file
+
+    // Requests the page that starts after the cursor (null for the first page).
+    public ShowCommand(int pageSize, String cursor) {
+        super("show", pageSize + (cursor == null ? "" : " " + cursor));
+    }
+
+    // Asks for the changes after the sync token of an earlier delta (null for a first, full one).
+    public static ShowCommand since(String syncToken) {
+        return new ShowCommand(SINCE + (syncToken == null ? "" : " " + syncToken));
+    }
+}
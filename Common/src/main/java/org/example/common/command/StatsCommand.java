@@ -0,0 +1,11 @@
+package org.example.common.command;
+
+import java.io.Serializable;
+
+public class StatsCommand extends Command implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public StatsCommand(String arg) {
+        super("stats", arg);
+    }
+}
@@ -1,9 +1,12 @@
 package org.example.common.data;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
-public class Coordinates implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class Coordinates implements Externalizable {
+    private static final long serialVersionUID = 2L; // 1 was the default field-by-field form
 
     private Integer x; // Максимальное значение поля: 629, Поле не может быть null
     private double y;
@@ -31,6 +34,22 @@ public class Coordinates implements Serializable {
         this.y = y;
     }
 
+    // A leading flag says whether x is set
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeBoolean(x != null);
+        if (x != null) {
+            out.writeInt(x);
+        }
+        out.writeDouble(y);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        x = in.readBoolean() ? in.readInt() : null;
+        y = in.readDouble();
+    }
+
     @Override
     public String toString() {
         String coordinateString = "Coordinates \n";
@@ -0,0 +1,60 @@
+package org.example.common.data;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Field encodings shared by the writeExternal/readExternal methods of the model classes.
+final class ExternalFields {
+    private static final int MAX_STRING_BYTES = 1 << 20; // Guards the allocation against a corrupted length
+
+    private ExternalFields() {
+    }
+
+    // Length-prefixed UTF-8; unlike writeUTF it has no 64 KB limit.
+    static void writeString(ObjectOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ObjectInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new StreamCorruptedException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Epoch seconds (as if the time were UTC, so no zone rules are involved) plus nanoseconds.
+    static void writeDate(ObjectOutput out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    static LocalDateTime readDate(ObjectInput in) throws IOException {
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        try {
+            return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            throw new InvalidObjectException("Invalid date: " + e.getMessage());
+        }
+    }
+
+    static <E extends Enum<E>> E readEnum(ObjectInput in, E[] values) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= values.length) {
+            throw new InvalidObjectException("Invalid ordinal " + ordinal + " for "
+                    + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ordinal];
+    }
+}
@@ -3,11 +3,17 @@ package org.example.common.data;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Location implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class Location implements Externalizable {
+    private static final long serialVersionUID = 2L; // 1 was the default field-by-field form
+
+    private static final int HAS_Y = 1;
+    private static final int HAS_NAME = 1 << 1;
 
     private float x;
     private Float y; // Поле не может быть null
@@ -45,6 +51,22 @@ public class Location implements Serializable {
         this.name = name;
     }
 
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte((y != null ? HAS_Y : 0) | (name != null ? HAS_NAME : 0));
+        out.writeFloat(x);
+        if (y != null) out.writeFloat(y);
+        if (name != null) ExternalFields.writeString(out, name);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int present = in.readUnsignedByte();
+        x = in.readFloat();
+        y = (present & HAS_Y) != 0 ? in.readFloat() : null;
+        name = (present & HAS_NAME) != 0 ? ExternalFields.readString(in) : null;
+    }
+
     @Override
     public String toString() {
         String locationString = "Location \n";
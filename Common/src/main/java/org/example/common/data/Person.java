@@ -4,13 +4,32 @@ import org.example.common.util.LocalDateTimeAdapter;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+// Externalizable: Java serialization calls writeExternal/readExternal instead of reflecting over the fields,
+// and the class descriptor carries no field list. Nullable fields are announced in a presence mask.
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Person implements Comparable<Person>, Serializable {
-    private static final long serialVersionUID = 1L;
+public class Person implements Comparable<Person>, Externalizable {
+    private static final long serialVersionUID = 2L; // 1 was the default field-by-field form
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_NAME = 1 << 1;
+    private static final int HAS_COORDINATES = 1 << 2;
+    private static final int HAS_CREATION_DATE = 1 << 3;
+    private static final int HAS_HEIGHT = 1 << 4;
+    private static final int HAS_EYE_COLOR = 1 << 5;
+    private static final int HAS_HAIR_COLOR = 1 << 6;
+    private static final int HAS_NATIONALITY = 1 << 7;
+    private static final int HAS_LOCATION = 1 << 8;
+    private static final EyeColor[] EYE_COLORS = EyeColor.values();
+    private static final HairColor[] HAIR_COLORS = HairColor.values();
+    private static final Country[] COUNTRIES = Country.values();
+
     private Integer id; // Unique ID, non-nullable, auto-generated
     private String name; // non-null, non-empty string
     private Coordinates coordinates;// non-null
@@ -63,6 +82,52 @@ public class Person implements Comparable<Person>, Serializable {
     public void setLocation(Location location) { this.location = location; }
 
 
+    // Coordinates and location are written inline rather than as objects of their own, saving their headers.
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        int present = (id != null ? HAS_ID : 0)
+                | (name != null ? HAS_NAME : 0)
+                | (coordinates != null ? HAS_COORDINATES : 0)
+                | (creationDate != null ? HAS_CREATION_DATE : 0)
+                | (height != null ? HAS_HEIGHT : 0)
+                | (eyeColor != null ? HAS_EYE_COLOR : 0)
+                | (hairColor != null ? HAS_HAIR_COLOR : 0)
+                | (nationality != null ? HAS_NATIONALITY : 0)
+                | (location != null ? HAS_LOCATION : 0);
+        out.writeShort(present);
+        if (id != null) out.writeInt(id);
+        if (name != null) ExternalFields.writeString(out, name);
+        if (coordinates != null) coordinates.writeExternal(out);
+        if (creationDate != null) ExternalFields.writeDate(out, creationDate);
+        if (height != null) out.writeDouble(height);
+        if (eyeColor != null) out.writeByte(eyeColor.ordinal());
+        if (hairColor != null) out.writeByte(hairColor.ordinal());
+        if (nationality != null) out.writeByte(nationality.ordinal());
+        if (location != null) location.writeExternal(out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int present = in.readUnsignedShort();
+        id = (present & HAS_ID) != 0 ? in.readInt() : null;
+        name = (present & HAS_NAME) != 0 ? ExternalFields.readString(in) : null;
+        coordinates = null;
+        if ((present & HAS_COORDINATES) != 0) {
+            coordinates = new Coordinates();
+            coordinates.readExternal(in);
+        }
+        creationDate = (present & HAS_CREATION_DATE) != 0 ? ExternalFields.readDate(in) : null;
+        height = (present & HAS_HEIGHT) != 0 ? in.readDouble() : null;
+        eyeColor = (present & HAS_EYE_COLOR) != 0 ? ExternalFields.readEnum(in, EYE_COLORS) : null;
+        hairColor = (present & HAS_HAIR_COLOR) != 0 ? ExternalFields.readEnum(in, HAIR_COLORS) : null;
+        nationality = (present & HAS_NATIONALITY) != 0 ? ExternalFields.readEnum(in, COUNTRIES) : null;
+        location = null;
+        if ((present & HAS_LOCATION) != 0) {
+            location = new Location();
+            location.readExternal(in);
+        }
+    }
+
     @Override
     public String toString() {
         String personString = "PERSON DATA \n";
@@ -2,12 +2,17 @@ package org.example.common.data;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
 import java.util.List;
 
 @XmlRootElement(name = "persons") // Root element name in XML
-public class PersonList implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class PersonList implements Externalizable {
+    private static final long serialVersionUID = 2L; // 1 was the default field-by-field form
     private List<Person> persons;
 
     // JAXB needs a no-arg constructor
@@ -25,4 +30,41 @@ public class PersonList implements Serializable {
     public void setPersons(List<Person> persons) {
         this.persons = persons;
     }
+
+    // Size (-1 for no list), then every person inline with a presence flag, without per-object headers
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        if (persons == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(persons.size());
+        for (Person person : persons) {
+            out.writeBoolean(person != null);
+            if (person != null) {
+                person.writeExternal(out);
+            }
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int size = in.readInt();
+        if (size < -1) {
+            throw new StreamCorruptedException("Invalid person count: " + size);
+        }
+        if (size == -1) {
+            persons = null;
+            return;
+        }
+        persons = new ArrayList<>(Math.min(size, 1024)); // The count is not trusted for the allocation
+        for (int i = 0; i < size; i++) {
+            Person person = null;
+            if (in.readBoolean()) {
+                person = new Person();
+                person.readExternal(in);
+            }
+            persons.add(person);
+        }
+    }
 }
\ No newline at end of file
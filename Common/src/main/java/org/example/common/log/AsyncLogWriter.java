@@ -0,0 +1,120 @@
+package org.example.common.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Background thread that drains the ring buffer and does the formatting and console writes.
+// The writer parks when there is nothing to do; producers only unpark it when it is actually parked.
+final class AsyncLogWriter implements Runnable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final RingBuffer<LogEvent> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean parked;
+    private long reportedDropped;
+
+    AsyncLogWriter(int capacity) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.thread = new Thread(this, "async-logger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void publish(LogEvent event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+            return;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    // Waits (up to the timeout) until everything published before the call has been written.
+    void flush(long timeoutMillis) {
+        long target = buffer.tailPosition();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (buffer.headPosition() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        System.out.flush();
+        System.err.flush();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            LogEvent event = buffer.poll();
+            if (event == null) {
+                reportDropped();
+                parked = true;
+                if (buffer.headPosition() == buffer.tailPosition()) { // Re-check so a publish cannot be missed
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+                continue;
+            }
+            write(event);
+        }
+    }
+
+    private void reportDropped() {
+        long total = dropped.sum();
+        if (total != reportedDropped) {
+            System.err.println(TIME_FORMAT.format(Instant.now()) + " WARN  [async-logger] " + (total - reportedDropped)
+                    + " log messages dropped, the log buffer was full");
+            reportedDropped = total;
+        }
+    }
+
+    private static void write(LogEvent event) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(TIME_FORMAT.format(Instant.ofEpochMilli(event.timeMillis))).append(' ');
+        line.append(String.format("%-5s", event.level)).append(" [").append(event.thread).append("] ");
+        line.append(event.logger).append(" - ");
+        Throwable throwable = appendFormatted(line, event.format, event.args);
+        if (throwable != null) {
+            StringWriter trace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+        }
+        if (event.level == Level.ERROR || event.level == Level.WARN) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    // Replaces each "{}" with the next argument. A Throwable left over after the placeholders is returned
+    // so that its stack trace can be printed.
+    private static Throwable appendFormatted(StringBuilder line, String format, Object[] args) {
+        int argIndex = 0;
+        int from = 0;
+        if (args != null) {
+            int placeholder;
+            while (argIndex < args.length && (placeholder = format.indexOf("{}", from)) >= 0) {
+                line.append(format, from, placeholder).append(args[argIndex++]);
+                from = placeholder + 2;
+            }
+        }
+        line.append(format, from, format.length());
+        if (args != null && argIndex < args.length && args[args.length - 1] instanceof Throwable) {
+            return (Throwable) args[args.length - 1];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.common.log;
+
+// Severity of a log message. A logger at some level prints that level and everything more severe.
+public enum Level {
+    ERROR,
+    WARN,
+    INFO,
+    DEBUG;
+
+    public static Level fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return INFO;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "error":
+                return ERROR;
+            case "warn":
+            case "quiet":
+                return WARN;
+            case "info":
+                return INFO;
+            case "debug":
+            case "verbose":
+                return DEBUG;
+            default:
+                throw new IllegalArgumentException("Unknown log level: " + value + " (expected error, warn, info or debug)");
+        }
+    }
+
+    boolean includes(Level other) {
+        return other.ordinal() <= ordinal();
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.common.log;
+
+/* Entry point of the logging facility used on the request path instead of System.out.
+ Callers only put the message into a lock-free ring buffer; a background thread formats it and writes it to the
+ console (WARN and ERROR to stderr). If the buffer is full the message is dropped rather than blocking the caller.
+ The level comes from the LOG_LEVEL environment variable: error, warn (alias quiet), info (default) or
+ debug (alias verbose). Per-request messages are DEBUG, so they are off unless asked for.
+ */
+public final class Log {
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final long FLUSH_TIMEOUT_MILLIS = 2000;
+
+    private static volatile Level level = initialLevel();
+    private static final AsyncLogWriter WRITER = new AsyncLogWriter(BUFFER_CAPACITY);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "async-logger-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return level.includes(messageLevel);
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    // Messages lost because the buffer was full
+    public static long getDropped() {
+        return WRITER.getDropped();
+    }
+
+    // Blocks until the messages logged so far are written. Call before exiting so that nothing is lost.
+    public static void flush() {
+        WRITER.flush(FLUSH_TIMEOUT_MILLIS);
+    }
+
+    static void publish(LogEvent event) {
+        WRITER.publish(event);
+    }
+
+    private static Level initialLevel() {
+        try {
+            return Level.fromString(System.getenv("LOG_LEVEL"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ". Using info.");
+            return Level.INFO;
+        }
+    }
+}
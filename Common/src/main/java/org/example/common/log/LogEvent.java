@@ -0,0 +1,20 @@
+package org.example.common.log;
+
+// A message as the caller left it: the template and its arguments are only formatted on the writer thread.
+final class LogEvent {
+    final long timeMillis;
+    final Level level;
+    final String logger;
+    final String thread;
+    final String format;
+    final Object[] args;
+
+    LogEvent(long timeMillis, Level level, String logger, String thread, String format, Object[] args) {
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.logger = logger;
+        this.thread = thread;
+        this.format = format;
+        this.args = args;
+    }
+}
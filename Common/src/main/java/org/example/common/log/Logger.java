@@ -0,0 +1,37 @@
+package org.example.common.log;
+
+// Named logger. Messages are templates with "{}" placeholders; nothing is formatted, and nothing is queued,
+// unless the level is enabled. A Throwable passed as the last argument is printed with its stack trace.
+public final class Logger {
+    private final String name;
+
+    Logger(String name) {
+        this.name = name;
+    }
+
+    public boolean isDebugEnabled() {
+        return Log.isEnabled(Level.DEBUG);
+    }
+
+    public void error(String format, Object... args) {
+        log(Level.ERROR, format, args);
+    }
+
+    public void warn(String format, Object... args) {
+        log(Level.WARN, format, args);
+    }
+
+    public void info(String format, Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public void debug(String format, Object... args) {
+        log(Level.DEBUG, format, args);
+    }
+
+    private void log(Level level, String format, Object[] args) {
+        if (Log.isEnabled(level)) {
+            Log.publish(new LogEvent(System.currentTimeMillis(), level, name, Thread.currentThread().getName(), format, args));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.common.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded lock-free queue for many producers and one consumer.
+// Producers claim a slot by advancing the tail with a CAS, fill it and publish it through the slot's sequence number;
+// the consumer only takes slots whose sequence says they are published. When the buffer is full offer() fails
+// instead of waiting, so a slow console can never stall the thread that logs.
+final class RingBuffer<E> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // Written by the consumer only
+
+    RingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, element);
+                    sequences.set(index, position + 1); // Publish
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // Full: the consumer has not freed this slot yet
+            }
+            // Otherwise another producer took the slot; retry with the new tail
+        }
+    }
+
+    // Consumer thread only
+    E poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null; // Empty, or the producer of the next slot has not published yet
+        }
+        E element = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, position + capacity); // Free the slot for the next lap
+        head = position + 1;
+        return element;
+    }
+
+    // Position up to which everything offered so far will have been consumed
+    long tailPosition() {
+        return tail.get();
+    }
+
+    long headPosition() {
+        return head;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.common.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pool of equally sized direct ByteBuffers, so the datagram hot path does not allocate
+// a fresh buffer (and leave garbage behind) for every packet it receives or sends.
+// Buffers are handed out cleared; releasing a buffer that does not belong to the pool is a no-op.
+// At most maxDirect direct buffers exist at a time; beyond that acquire hands out heap buffers, which the
+// garbage collector takes care of, so a burst can not run the process out of direct memory.
+public class BufferPool {
+    public static final int DATAGRAM_BUFFER_SIZE = 65536; // Fits any UDP payload
+    private static final int DEFAULT_MAX_POOLED = 256;
+    private static final int DEFAULT_MAX_DIRECT = 1024; // 64 MB of datagram buffers
+
+    private static final BufferPool DATAGRAM_POOL = new BufferPool(DATAGRAM_BUFFER_SIZE, DEFAULT_MAX_POOLED, DEFAULT_MAX_DIRECT);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final int maxDirect;
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicInteger directCount = new AtomicInteger(); // Direct buffers handed out or pooled
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this(bufferSize, maxPooled, Integer.MAX_VALUE);
+    }
+
+    public BufferPool(int bufferSize, int maxPooled, int maxDirect) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.maxDirect = maxDirect;
+    }
+
+    // Process-wide pool of datagram-sized buffers, shared by the network classes.
+    public static BufferPool datagramPool() {
+        return DATAGRAM_POOL;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (directCount.incrementAndGet() > maxDirect) {
+                directCount.decrementAndGet();
+                return ByteBuffer.allocate(bufferSize);
+            }
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        freeCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (freeCount.incrementAndGet() > maxPooled) {
+            freeCount.decrementAndGet(); // Pool is full, let this one be collected
+            directCount.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,210 @@
+package org.example.common.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Framing used between client and server. Server responses may be larger than one UDP datagram.
+ A serialized response is split into sequence-numbered chunks that share a transfer id.
+ The client reassembles them and asks for missing chunks with a NACK frame
+ instead of repeating the whole command.
+
+ The request id lets a pipelining client route chunks to the right request before reassembly.
+ Commands travel in a REQUEST frame whose header carries the request id, so the server can answer
+ (e.g. turn the request away when it is overloaded) without deserializing the command.
+
+ REQUEST: magic(2) type(1) flags(1) requestId(8) serialized command
+ CHUNK:   magic(2) type(1) flags(1) transferId(8) requestId(8) index(4) count(4) totalLength(4) payload
+          flags: FLAG_DEFLATE if the reassembled payload is deflate-compressed
+ NACK:    magic(2) type(1) flags(1) transferId(8) n(4) index(4) * n
+ */
+public class ChunkProtocol {
+    public static final short MAGIC = 0x4C36; // Never the first bytes of a Java serialization stream (0xACED)
+    public static final byte TYPE_CHUNK = 1;
+    public static final byte TYPE_NACK = 2;
+    public static final byte TYPE_REQUEST = 3;
+    public static final byte FLAG_DEFLATE = 0x01;
+
+    public static final int MAX_DATAGRAM_SIZE = 65507; // Max UDP payload over IPv4
+    public static final int REQUEST_HEADER_SIZE = 12;
+    public static final int CHUNK_HEADER_SIZE = 32;
+    public static final int NACK_HEADER_SIZE = 16;
+    public static final int MAX_CHUNK_PAYLOAD = 16 * 1024;
+    public static final int MAX_NACK_INDICES = 1024;
+
+    private ChunkProtocol() {
+    }
+
+    // True if the buffer (from its position) starts with a protocol frame.
+    public static boolean isFrame(ByteBuffer buffer) {
+        return buffer.remaining() >= 4 && buffer.getShort(buffer.position()) == MAGIC;
+    }
+
+    public static byte frameType(ByteBuffer buffer) {
+        return buffer.get(buffer.position() + 2);
+    }
+
+    // Writes a request header into the first REQUEST_HEADER_SIZE bytes of the buffer without moving its position.
+    public static void writeRequestHeader(ByteBuffer buffer, long requestId) {
+        buffer.putShort(0, MAGIC)
+                .put(2, TYPE_REQUEST)
+                .put(3, (byte) 0)
+                .putLong(4, requestId);
+    }
+
+    // Reads the request id of a REQUEST frame and moves the position to the serialized command.
+    public static long readRequestHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < REQUEST_HEADER_SIZE || buffer.getShort() != MAGIC || buffer.get() != TYPE_REQUEST) {
+            throw new IllegalArgumentException("Not a request frame.");
+        }
+        buffer.get(); // flags
+        return buffer.getLong();
+    }
+
+    // Splits a serialized response into ready-to-send chunk datagrams.
+    public static List<ByteBuffer> split(long transferId, long requestId, byte flags, byte[] payload) {
+        int count = Math.max(1, (payload.length + MAX_CHUNK_PAYLOAD - 1) / MAX_CHUNK_PAYLOAD);
+        List<ByteBuffer> chunks = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int offset = index * MAX_CHUNK_PAYLOAD;
+            int length = Math.min(MAX_CHUNK_PAYLOAD, payload.length - offset);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER_SIZE + length);
+            writeChunkHeader(chunk, transferId, requestId, flags, index, count, payload.length);
+            chunk.position(CHUNK_HEADER_SIZE);
+            chunk.put(payload, offset, length);
+            chunk.flip();
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // Writes a chunk header into the first CHUNK_HEADER_SIZE bytes of the buffer without moving its position.
+    // Lets a payload be serialized straight into a buffer that left room for the header.
+    public static void writeChunkHeader(ByteBuffer buffer, long transferId, long requestId, byte flags,
+                                        int index, int count, int totalLength) {
+        buffer.putShort(0, MAGIC)
+                .put(2, TYPE_CHUNK)
+                .put(3, flags)
+                .putLong(4, transferId)
+                .putLong(12, requestId)
+                .putInt(20, index)
+                .putInt(24, count)
+                .putInt(28, totalLength);
+    }
+
+    public static Chunk readChunk(ByteBuffer buffer) {
+        if (buffer.remaining() < CHUNK_HEADER_SIZE || buffer.getShort() != MAGIC || buffer.get() != TYPE_CHUNK) {
+            throw new IllegalArgumentException("Not a chunk frame.");
+        }
+        byte flags = buffer.get();
+        long transferId = buffer.getLong();
+        long requestId = buffer.getLong();
+        int index = buffer.getInt();
+        int count = buffer.getInt();
+        int totalLength = buffer.getInt();
+        if (count <= 0 || index < 0 || index >= count || totalLength < 0
+                || (long) count * MAX_CHUNK_PAYLOAD < totalLength) {
+            throw new IllegalArgumentException("Malformed chunk header.");
+        }
+        return new Chunk(transferId, requestId, flags, index, count, totalLength, buffer.slice());
+    }
+
+    // Builds a NACK asking for at most MAX_NACK_INDICES missing chunks of a transfer.
+    public static ByteBuffer encodeNack(long transferId, int[] missing, int length) {
+        int n = Math.min(length, MAX_NACK_INDICES);
+        ByteBuffer nack = ByteBuffer.allocate(NACK_HEADER_SIZE + 4 * n);
+        nack.putShort(MAGIC)
+                .put(TYPE_NACK)
+                .put((byte) 0)
+                .putLong(transferId)
+                .putInt(n);
+        for (int i = 0; i < n; i++) {
+            nack.putInt(missing[i]);
+        }
+        nack.flip();
+        return nack;
+    }
+
+    public static Nack readNack(ByteBuffer buffer) {
+        if (buffer.remaining() < NACK_HEADER_SIZE || buffer.getShort() != MAGIC || buffer.get() != TYPE_NACK) {
+            throw new IllegalArgumentException("Not a NACK frame.");
+        }
+        buffer.get(); // flags
+        long transferId = buffer.getLong();
+        int n = buffer.getInt();
+        if (n < 0 || n > MAX_NACK_INDICES || buffer.remaining() < 4 * n) {
+            throw new IllegalArgumentException("Malformed NACK frame.");
+        }
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = buffer.getInt();
+        }
+        return new Nack(transferId, indices);
+    }
+
+    public static final class Chunk {
+        private final long transferId;
+        private final long requestId;
+        private final byte flags;
+        private final int index;
+        private final int count;
+        private final int totalLength;
+        private final ByteBuffer payload;
+
+        private Chunk(long transferId, long requestId, byte flags, int index, int count, int totalLength, ByteBuffer payload) {
+            this.transferId = transferId;
+            this.requestId = requestId;
+            this.flags = flags;
+            this.index = index;
+            this.count = count;
+            this.totalLength = totalLength;
+            this.payload = payload;
+        }
+
+        public long getTransferId() {
+            return transferId;
+        }
+
+        public long getRequestId() {
+            return requestId;
+        }
+
+        public boolean isDeflated() {
+            return (flags & FLAG_DEFLATE) != 0;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getTotalLength() {
+            return totalLength;
+        }
+
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+    }
+
+    public static final class Nack {
+        private final long transferId;
+        private final int[] indices;
+
+        private Nack(long transferId, int[] indices) {
+            this.transferId = transferId;
+            this.indices = indices;
+        }
+
+        public long getTransferId() {
+            return transferId;
+        }
+
+        public int[] getIndices() {
+            return indices;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.common.network;
+
+// Partitioning of the collection in cluster mode: the person with a given id lives on shard floorMod(id, shardCount).
+// Servers only hand out ids of their own shard, and clients route by the same rule.
+public final class Sharding {
+    private Sharding() {
+    }
+
+    public static int shardOf(int id, int shardCount) {
+        return Math.floorMod(id, shardCount);
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.common.response;
+
+import java.io.Serializable;
+
+// Partial aggregate of the heights in a collection. Sums and counts from several shards add up to the exact average.
+public class HeightStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final double sum;
+    private final long count;
+    private final double max; // 0 when count is 0
+
+    public HeightStats(double sum, long count, double max) {
+        this.sum = sum;
+        this.count = count;
+        this.max = max;
+    }
+
+    public HeightStats merge(HeightStats other) {
+        if (other == null || other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        return new HeightStats(sum + other.sum, count + other.count, Math.max(max, other.max));
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return count == 0 ? 0 : sum / count;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.common.response;
+
+import org.example.common.data.Person;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Answer to 'show since <token>': what changed in the collection after the state the token stands for.
+// changed holds the current state of every person added or updated since, removedIds the persons that are gone.
+// A full resync (unknown or too old token) carries the whole collection in changed and replaces everything the
+// client held. syncToken is passed to the next 'show since'.
+public class PersonDelta implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String syncToken;
+    private final boolean fullResync;
+    private final ArrayList<Person> changed;
+    private final ArrayList<Integer> removedIds;
+
+    public PersonDelta(String syncToken, boolean fullResync, List<Person> changed, List<Integer> removedIds) {
+        this.syncToken = syncToken;
+        this.fullResync = fullResync;
+        this.changed = new ArrayList<>(changed);
+        this.removedIds = new ArrayList<>(removedIds);
+    }
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public boolean isFullResync() {
+        return fullResync;
+    }
+
+    public List<Person> getChanged() {
+        return changed;
+    }
+
+    public List<Integer> getRemovedIds() {
+        return removedIds;
+    }
+
+    public boolean isUpToDate() {
+        return !fullResync && changed.isEmpty() && removedIds.isEmpty();
+    }
+
+    // Brings a client-side copy of the collection, keyed by id, to the state of this delta.
+    public void applyTo(Map<Integer, Person> persons) {
+        if (fullResync) {
+            persons.clear();
+        }
+        for (Integer id : removedIds) {
+            persons.remove(id);
+        }
+        for (Person person : changed) {
+            persons.put(person.getId(), person);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.common.response;
+
+import org.example.common.data.Person;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+// One page of a paginated 'show': persons in collection order, starting after the requested cursor.
+// nextCursor is passed back in the next 'show' to continue; it is null on the last page.
+public class PersonPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final ArrayList<Person> persons;
+    private final String nextCursor;
+    private final int totalCount; // Size of the whole collection when the page was taken
+
+    public PersonPage(List<Person> persons, String nextCursor, int totalCount) {
+        this.persons = new ArrayList<>(persons);
+        this.nextCursor = nextCursor;
+        this.totalCount = totalCount;
+    }
+
+    public List<Person> getPersons() {
+        return persons;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
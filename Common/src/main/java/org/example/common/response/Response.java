@@ -7,9 +7,13 @@ import java.io.Serializable;
 
 public class Response implements Serializable {
     private static final long serialVersionUID = 1L;
+    // Start of the message a replica answers writes with; clients that know other servers retry elsewhere
+    public static final String READ_ONLY_REPLICA = "This server is a read-only replica.";
     private final String message;
     private final boolean success; // True if command executed successfully, false otherwise
     private final Object data; // To hold a List for commands like 'History'.
+    private long requestId; // Copied from the command this response answers
+    private long retryAfterMillis; // Non-zero when the server turned the request away because it is busy
 
     // Constructor for responses with a message and a data payload.
     public Response(String message, boolean success, Object data) {
@@ -35,6 +39,22 @@ public class Response implements Serializable {
         return data;
     }
 
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
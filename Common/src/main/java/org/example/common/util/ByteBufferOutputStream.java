@@ -0,0 +1,74 @@
+package org.example.common.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/* OutputStream that writes straight into a ByteBuffer (typically a pooled direct buffer).
+ If the data outgrows the buffer the stream spills into a growing heap array instead of failing,
+ so callers can serialize optimistically and only pay for a copy when the object is large.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+    private final int start;
+    private ByteArrayOutputStream spill;
+
+    public ByteBufferOutputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+    }
+
+    @Override
+    public void write(int b) {
+        if (spill == null && buffer.hasRemaining()) {
+            buffer.put((byte) b);
+            return;
+        }
+        spillIfNeeded(1);
+        spill.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        if (spill == null && buffer.remaining() >= length) {
+            buffer.put(bytes, offset, length);
+            return;
+        }
+        spillIfNeeded(length);
+        spill.write(bytes, offset, length);
+    }
+
+    private void spillIfNeeded(int extra) {
+        if (spill != null) {
+            return;
+        }
+        int written = buffer.position() - start;
+        spill = new ByteArrayOutputStream(Math.max(written * 2, written + extra));
+        ByteBuffer content = buffer.duplicate();
+        content.flip().position(start);
+        byte[] bytes = new byte[written];
+        content.get(bytes);
+        spill.write(bytes, 0, written);
+    }
+
+    // True if the data did not fit into the buffer and lives in the heap array instead.
+    public boolean hasSpilled() {
+        return spill != null;
+    }
+
+    // Bytes written so far, wherever they are stored.
+    public int size() {
+        return spill != null ? spill.size() : buffer.position() - start;
+    }
+
+    public byte[] toByteArray() {
+        if (spill != null) {
+            return spill.toByteArray();
+        }
+        ByteBuffer content = buffer.duplicate();
+        content.flip().position(start);
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+}
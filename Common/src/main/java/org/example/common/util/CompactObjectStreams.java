@@ -0,0 +1,124 @@
+package org.example.common.util;
+
+import org.example.common.command.*;
+import org.example.common.data.Coordinates;
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+import org.example.common.data.PersonList;
+import org.example.common.response.HeightStats;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
+import org.example.common.response.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Java serialization with class descriptors cached across messages.
+ Every datagram is its own ObjectOutputStream, so each one used to repeat the full descriptor (name, serialVersionUID,
+ field list) of every class it contains, and the reader parsed and checked it again. Classes both sides know are
+ listed in REGISTERED and written as a one-byte index; others are still written in full after a 0 byte.
+ The stream header carries COMPACT_VERSION instead of the standard version so that Input still reads plain
+ ObjectOutputStream data. The list is part of the wire format: only append to it.
+ */
+final class CompactObjectStreams {
+    static final short COMPACT_VERSION = 0x4301;
+
+    private static final Class<?>[] REGISTERED = {
+            Command.class, HelpCommand.class, InfoCommand.class, ShowCommand.class, AddCommand.class,
+            UpdateCommand.class, RemoveByIdCommand.class, ClearCommand.class, SaveCommand.class,
+            ExecuteScriptCommand.class, ExitCommand.class, AddIfMaxCommand.class, RemoveLowerCommand.class,
+            HistoryCommand.class, MaxByIdCommand.class, AverageOfHeightCommand.class, CountByLocationCommand.class,
+            StatsCommand.class, BatchCommand.class,
+            Response.class, PersonPage.class, HeightStats.class,
+            Person.class, Coordinates.class, Location.class, PersonList.class,
+            EyeColor.class, HairColor.class, Country.class, Enum.class,
+            ArrayList.class, Number.class, Integer.class, Long.class, Double.class, Float.class,
+            Boolean.class, PersonDelta.class,
+    };
+    private static final Map<Class<?>, Integer> INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < REGISTERED.length; i++) {
+            INDEXES.put(REGISTERED[i], i + 1); // 0 marks a descriptor written in full
+        }
+    }
+
+    private CompactObjectStreams() {
+    }
+
+    // Name of the class behind a descriptor index, for SerializationUtil.peekClassName; null for 0 or unknown
+    static String className(int index) {
+        return index > 0 && index <= REGISTERED.length ? REGISTERED[index - 1].getName() : null;
+    }
+
+    static final class Output extends ObjectOutputStream {
+        Output(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+            writeShort(ObjectStreamConstants.STREAM_MAGIC);
+            writeShort(COMPACT_VERSION);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            Integer index = INDEXES.get(desc.forClass());
+            if (index != null) {
+                writeByte(index);
+            } else {
+                writeByte(0);
+                super.writeClassDescriptor(desc);
+            }
+        }
+    }
+
+    // Reads both compact and standard streams.
+    static final class Input extends ObjectInputStream {
+        // Set from readStreamHeader, which the superclass constructor calls; no initializer, or it would be reset
+        private boolean compact;
+
+        Input(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected void readStreamHeader() throws IOException {
+            short magic = readShort();
+            short version = readShort();
+            if (magic != ObjectStreamConstants.STREAM_MAGIC
+                    || (version != COMPACT_VERSION && version != ObjectStreamConstants.STREAM_VERSION)) {
+                throw new StreamCorruptedException(String.format("invalid stream header: %04X%04X", magic, version));
+            }
+            compact = version == COMPACT_VERSION;
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            if (!compact) {
+                return super.readClassDescriptor();
+            }
+            int index = readUnsignedByte();
+            if (index == 0) {
+                return super.readClassDescriptor();
+            }
+            if (index > REGISTERED.length) {
+                throw new StreamCorruptedException("Unknown class descriptor index: " + index);
+            }
+            return ObjectStreamClass.lookup(REGISTERED[index - 1]);
+        }
+    }
+}
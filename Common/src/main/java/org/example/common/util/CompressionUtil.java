@@ -0,0 +1,44 @@
+package org.example.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+// Response compression. A client lists the encodings it can decode in Command.acceptedEncodings
+// (a bit set of the ENCODING_* constants); the server compresses large responses with one of them
+// and marks the chunks, see ChunkProtocol.FLAG_DEFLATE.
+public class CompressionUtil {
+    public static final int ENCODING_DEFLATE = 1;
+    public static final int SUPPORTED_ENCODINGS = ENCODING_DEFLATE;
+    public static final int COMPRESSION_THRESHOLD = 2048; // Smaller payloads are not worth the CPU
+
+    private CompressionUtil() {
+    }
+
+    // Deflate at the fastest level: serialized Person lists are highly repetitive, so even level 1
+    // removes most of the class descriptors and field names.
+    public static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] block = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(block);
+                out.write(block, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end(); // Frees the native zlib state right away instead of waiting for GC
+        }
+    }
+
+    // Buffered on top: ObjectInputStream reads many single bytes, and each read on an
+    // InflaterInputStream is a call into zlib.
+    public static InputStream inflatingStream(InputStream compressed) {
+        return new BufferedInputStream(new InflaterInputStream(compressed), 8192);
+    }
+}
@@ -1,24 +1,156 @@
 package org.example.common.util;
 
+import org.example.common.codec.BinaryCodec;
+import org.example.common.codec.WireFormat;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 //Utility class for serializing and deserializing objects.
 //Used for transferring Command and Response DTOs over the network.
+// The methods without a WireFormat use Java serialization; deserialize recognizes both formats by the first byte.
+// Java serialization goes through CompactObjectStreams, which writes known class descriptors as a one-byte index.
 
 public class SerializationUtil {
     public static byte[] serialize(Object obj) throws IOException {
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+             ObjectOutputStream oos = new CompactObjectStreams.Output(bos)) {
             oos.writeObject(obj);
+            oos.flush();
             return bos.toByteArray();
         }
     }
 
+    // Serializes into any stream, e.g. a ByteBufferOutputStream over a pooled buffer.
+    public static void serialize(Object obj, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new CompactObjectStreams.Output(out);
+        oos.writeObject(obj);
+        oos.flush();
+    }
+
+    public static byte[] serialize(Object obj, WireFormat format) throws IOException {
+        return format == WireFormat.BINARY ? BinaryCodec.encode(obj) : serialize(obj);
+    }
+
+    // In the binary format if possible; values BinaryCodec has no encoding for fall back to Java serialization.
+    // Returns the format that was used.
+    public static WireFormat serialize(Object obj, OutputStream out, WireFormat format) throws IOException {
+        if (format == WireFormat.BINARY) {
+            try {
+                BinaryCodec.encode(obj, out);
+                return WireFormat.BINARY;
+            } catch (NotSerializableException e) {
+                // Nothing was written yet: the codec only copies to the stream once the whole value is encoded
+            }
+        }
+        serialize(obj, out);
+        return WireFormat.JAVA;
+    }
+
+    public static void serialize(Object obj, ByteBuffer target, WireFormat format) throws IOException {
+        if (format == WireFormat.BINARY) {
+            BinaryCodec.encode(obj, target);
+        } else {
+            serialize(obj, target);
+        }
+    }
+
+    // Format of the payload at the buffer's position.
+    public static WireFormat detect(ByteBuffer source) {
+        return BinaryCodec.isBinary(source) ? WireFormat.BINARY : WireFormat.JAVA;
+    }
+
+    // Serializes directly into the buffer, starting at its position. Fails if the object does not fit.
+    public static void serialize(Object obj, ByteBuffer target) throws IOException {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(target);
+        serialize(obj, out);
+        if (out.hasSpilled()) {
+            throw new IOException("Serialized object (" + out.size() + " bytes) does not fit into "
+                    + target.capacity() + " bytes.");
+        }
+    }
+
+    // Returns the class name of the object serialized in the buffer (from its position) without deserializing it,
+    // or null if the bytes do not start like an ObjectOutputStream with a new object (or a binary command).
+    // Stream layout: magic(2) version(2) TC_OBJECT TC_CLASSDESC className(UTF) ...
+    // In a compact stream the class descriptor starts with its registry index, 0 meaning the name follows.
+    public static String peekClassName(ByteBuffer source) {
+        if (BinaryCodec.isBinary(source)) {
+            return BinaryCodec.peekClassName(source);
+        }
+        int start = source.position();
+        if (source.remaining() < 7
+                || source.getShort(start) != ObjectStreamConstants.STREAM_MAGIC
+                || source.get(start + 4) != ObjectStreamConstants.TC_OBJECT
+                || source.get(start + 5) != ObjectStreamConstants.TC_CLASSDESC) {
+            return null;
+        }
+        int offset = 6;
+        if (source.getShort(start + 2) == CompactObjectStreams.COMPACT_VERSION) {
+            int index = source.get(start + offset++) & 0xFF;
+            if (index != 0) {
+                return CompactObjectStreams.className(index);
+            }
+        }
+        if (source.remaining() < offset + 2) {
+            return null;
+        }
+        int length = source.getShort(start + offset) & 0xFFFF;
+        if (source.remaining() < offset + 2 + length) {
+            return null;
+        }
+        byte[] name = new byte[length];
+        source.get(start + offset + 2, name);
+        return new String(name, StandardCharsets.UTF_8); // Class names are plain ASCII, so modified UTF-8 decodes as UTF-8
+    }
+
     // Deserializes a byte array back into an object.
     public static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        if (bytes.length > 0 && bytes[0] == BinaryCodec.VERSION) {
+            return BinaryCodec.decode(ByteBuffer.wrap(bytes));
+        }
         try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-             ObjectInputStream ois = new ObjectInputStream(bis)) {
+             ObjectInputStream ois = new CompactObjectStreams.Input(bis)) {
+            return ois.readObject();
+        }
+    }
+
+    // Deserializes the remaining bytes of the buffer without copying them into an array first.
+    public static Object deserialize(ByteBuffer source) throws IOException, ClassNotFoundException {
+        return deserialize(source, false, null);
+    }
+
+    // Same, with every class of a Java-serialized payload checked by the filter; meant for untrusted input.
+    public static Object deserialize(ByteBuffer source, ObjectInputFilter filter) throws IOException, ClassNotFoundException {
+        return deserialize(source, false, filter);
+    }
+
+    // Same, for a payload that may have been compressed with CompressionUtil.deflate; it is inflated while reading.
+    public static Object deserialize(ByteBuffer source, boolean deflated) throws IOException, ClassNotFoundException {
+        return deserialize(source, deflated, null);
+    }
+
+    private static Object deserialize(ByteBuffer source, boolean deflated, ObjectInputFilter filter)
+            throws IOException, ClassNotFoundException {
+        if (!deflated && BinaryCodec.isBinary(source)) {
+            return BinaryCodec.decode(source);
+        }
+        InputStream in = new ByteBufferInputStream(source);
+        if (deflated) {
+            in = CompressionUtil.inflatingStream(in);
+            in.mark(1);
+            boolean binary = in.read() == BinaryCodec.VERSION;
+            in.reset();
+            if (binary) {
+                return BinaryCodec.decode(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        }
+        try (ObjectInputStream ois = new CompactObjectStreams.Input(in)) {
+            if (filter != null) {
+                ois.setObjectInputFilter(filter);
+            }
             return ois.readObject();
         }
     }
-}
\ No newline at end of file
+}
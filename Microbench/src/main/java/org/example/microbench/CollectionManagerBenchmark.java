@@ -0,0 +1,73 @@
+package org.example.microbench;
+
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+import org.example.server.manager.CollectionManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The CollectionManager operations behind the server commands, at growing collection sizes.
+// Mutating benchmarks undo their change in the same invocation so the collection keeps its size.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CollectionManagerBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private CollectionManager collectionManager;
+    private Location location;
+    private double maxHeight;
+    private Person lowest;
+    private Person aboveLowest;
+
+    @Setup
+    public void setUp() {
+        collectionManager = new CollectionManager();
+        collectionManager.setPersonTreeSet(Persons.collection(size));
+        location = new Location(1, 2f, Persons.LOCATION_NAMES[0]);
+        maxHeight = collectionManager.getMaxHeight();
+        lowest = Persons.person(0);
+        // Only the lowest person is below this threshold
+        aboveLowest = Persons.person(size + 2, lowest.getHeight() + 0.00005, 0);
+    }
+
+    @Benchmark
+    public boolean addAndRemovePerson() {
+        Person person = Persons.person(size + 1, maxHeight + 1.0, size);
+        collectionManager.addPerson(person);
+        return collectionManager.removePerson(person);
+    }
+
+    @Benchmark
+    public Person getById() {
+        return collectionManager.getById(ThreadLocalRandom.current().nextInt(size) + 1);
+    }
+
+    @Benchmark
+    public int generateId() {
+        return collectionManager.generateId();
+    }
+
+    @Benchmark
+    public long countByLocation() {
+        return collectionManager.countByLocation(location);
+    }
+
+    @Benchmark
+    public boolean removeLowerAndReAdd() {
+        List<Person> removed = collectionManager.removeLower(aboveLowest);
+        return collectionManager.addPerson(removed.get(0));
+    }
+
+    @Benchmark
+    public double getAverageHeight() {
+        return collectionManager.getAverageHeight();
+    }
+}
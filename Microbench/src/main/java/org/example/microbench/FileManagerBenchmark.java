@@ -0,0 +1,55 @@
+package org.example.microbench;
+
+import org.example.server.manager.CollectionManager;
+import org.example.server.manager.FileManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// JAXB persistence of the collection, as done at startup and on shutdown.
+// A million persons make a file of several hundred megabytes, so the sizes stop at 100k.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class FileManagerBenchmark {
+    @Param({"1000", "100000"})
+    public int size;
+
+    private CollectionManager collectionManager;
+    private FileManager fileManager;
+    private Path loadFile;
+    private Path saveFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        collectionManager = new CollectionManager();
+        collectionManager.setPersonTreeSet(Persons.collection(size));
+        fileManager = new FileManager(collectionManager);
+        loadFile = Files.createTempFile("microbench-load", ".xml");
+        saveFile = Files.createTempFile("microbench-save", ".xml");
+        fileManager.saveCollectionToXml(loadFile.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(loadFile);
+        Files.deleteIfExists(saveFile);
+    }
+
+    @Benchmark
+    public int loadCollectionFromXml() {
+        fileManager.loadCollectionFromXml(loadFile.toString());
+        return collectionManager.getElementCount();
+    }
+
+    @Benchmark
+    public void saveCollectionToXml() {
+        fileManager.saveCollectionToXml(saveFile.toString());
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.microbench;
+
+import org.example.common.data.Coordinates;
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+
+import java.time.LocalDateTime;
+import java.util.TreeSet;
+
+// Deterministic test data, so numbers from different commits are measured on the same collection.
+final class Persons {
+    static final String[] LOCATION_NAMES = {"Moscow", "Berlin", "Rome", "Bangkok", "Tokyo"};
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private Persons() {
+    }
+
+    // The collection is ordered and deduplicated by height, so every index gets its own height.
+    static Person person(int index) {
+        return person(index + 1, 50.0 + index * 0.0001, index);
+    }
+
+    static Person person(int id, double height, int seed) {
+        return new Person(id, "person" + id,
+                new Coordinates(seed % 600, seed * 0.5),
+                CREATED,
+                height,
+                EyeColor.values()[seed % EyeColor.values().length],
+                HairColor.values()[seed % HairColor.values().length],
+                Country.values()[seed % Country.values().length],
+                new Location(seed % 4, (float) (seed % 3), LOCATION_NAMES[seed % LOCATION_NAMES.length]));
+    }
+
+    static TreeSet<Person> collection(int size) {
+        TreeSet<Person> persons = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            persons.add(person(i));
+        }
+        return persons;
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.microbench;
+
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Person;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Copy of the Person, Coordinates and Location fields with default, reflective Java serialization, i.e. the
+// encoding the model classes had before they became Externalizable. Only used as a baseline in the benchmarks.
+final class ReflectivePerson implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Integer id;
+    private final String name;
+    private final Coordinates coordinates;
+    private final LocalDateTime creationDate;
+    private final Double height;
+    private final EyeColor eyeColor;
+    private final HairColor hairColor;
+    private final Country nationality;
+    private final Location location;
+
+    ReflectivePerson(Person person) {
+        this.id = person.getId();
+        this.name = person.getName();
+        this.coordinates = person.getCoordinates() == null ? null
+                : new Coordinates(person.getCoordinates().getX(), person.getCoordinates().getY());
+        this.creationDate = person.getCreationDate();
+        this.height = person.getHeight();
+        this.eyeColor = person.getEyeColor();
+        this.hairColor = person.getHairColor();
+        this.nationality = person.getNationality();
+        this.location = person.getLocation() == null ? null : new Location(person.getLocation().getX(),
+                person.getLocation().getY(), person.getLocation().getName());
+    }
+
+    private static final class Coordinates implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Integer x;
+        private final double y;
+
+        private Coordinates(Integer x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class Location implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final float x;
+        private final Float y;
+        private final String name;
+
+        private Location(float x, Float y, String name) {
+            this.x = x;
+            this.y = y;
+            this.name = name;
+        }
+    }
+}
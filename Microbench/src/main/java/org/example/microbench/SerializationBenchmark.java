@@ -0,0 +1,117 @@
+package org.example.microbench;
+
+import org.example.common.codec.WireFormat;
+import org.example.common.command.AddCommand;
+import org.example.common.command.InfoCommand;
+import org.example.common.data.Person;
+import org.example.common.response.Response;
+import org.example.common.util.SerializationUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Encoding of what travels in a datagram: small commands, and a short and a 'show'-sized response,
+// with Java serialization and with the binary codec. The baseline benchmarks show the encoding before the compact
+// streams and the Externalizable model classes: a bare ObjectOutputStream over ReflectivePerson copies, i.e. full class
+// descriptors in every message and reflective field-by-field serialization.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"100", "1000"})
+    public int showSize; // Persons in the show response
+
+    @Param({"JAVA", "BINARY"})
+    public WireFormat format;
+
+    private AddCommand addCommand;
+    private InfoCommand infoCommand;
+    private Response messageResponse;
+    private Response showResponse;
+    private byte[] addCommandBytes;
+    private byte[] messageResponseBytes;
+    private byte[] showResponseBytes;
+    private Response showResponseBaseline;
+    private byte[] showResponseBaselineBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        addCommand = new AddCommand("", Persons.person(1));
+        infoCommand = new InfoCommand("");
+        messageResponse = new Response("Collection type: TreeSet, initialization date: 2024-01-01T12:00, elements: 1000", true);
+        ArrayList<Person> persons = new ArrayList<>(Persons.collection(showSize));
+        showResponse = new Response("DISPLAYING THE COLLECTION DATA:", true, persons);
+
+        addCommandBytes = SerializationUtil.serialize(addCommand, format);
+        messageResponseBytes = SerializationUtil.serialize(messageResponse, format);
+        showResponseBytes = SerializationUtil.serialize(showResponse, format);
+        ArrayList<ReflectivePerson> reflectivePersons = new ArrayList<>();
+        persons.forEach(person -> reflectivePersons.add(new ReflectivePerson(person)));
+        showResponseBaseline = new Response("DISPLAYING THE COLLECTION DATA:", true, reflectivePersons);
+        showResponseBaselineBytes = serializePlainStream(showResponseBaseline);
+    }
+
+    @Benchmark
+    public byte[] serializeInfoCommand() throws IOException {
+        return SerializationUtil.serialize(infoCommand, format);
+    }
+
+    @Benchmark
+    public byte[] serializeAddCommand() throws IOException {
+        return SerializationUtil.serialize(addCommand, format);
+    }
+
+    @Benchmark
+    public Object deserializeAddCommand() throws IOException, ClassNotFoundException {
+        return SerializationUtil.deserialize(addCommandBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeMessageResponse() throws IOException {
+        return SerializationUtil.serialize(messageResponse, format);
+    }
+
+    @Benchmark
+    public Object deserializeMessageResponse() throws IOException, ClassNotFoundException {
+        return SerializationUtil.deserialize(messageResponseBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeShowResponse() throws IOException {
+        return SerializationUtil.serialize(showResponse, format);
+    }
+
+    @Benchmark
+    public Object deserializeShowResponse() throws IOException, ClassNotFoundException {
+        return SerializationUtil.deserialize(showResponseBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeShowResponseBaseline() throws IOException {
+        return serializePlainStream(showResponseBaseline);
+    }
+
+    @Benchmark
+    public Object deserializeShowResponseBaseline() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(showResponseBaselineBytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] serializePlainStream(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+}
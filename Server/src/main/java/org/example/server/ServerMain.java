@@ -1,19 +1,30 @@
 package org.example.server;
 
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.network.Sharding;
 import org.example.server.manager.CollectionManager;
 import org.example.server.manager.FileManager;
 import org.example.server.manager.ServerCommandManager;
+import org.example.server.network.ExecutionMode;
 import org.example.server.network.UDPServer;
+import org.example.server.replication.ReplicationPrimary;
+import org.example.server.replication.ReplicationReplica;
 
 import java.io.IOException;
+import java.net.InetAddress;
 
 public class ServerMain {
+    private static final Logger LOG = Log.getLogger(ServerMain.class);
+
     public static void main(String[] args) {
 
-        System.out.println("Starting server application...");
+        LOG.info("Starting server application...");
 
         String filePath = System.getenv("COLLECTION_FILE_PATH");
         CollectionManager collectionManager = new CollectionManager();
+        // SERVER_SELF_CHECK=true recounts the maintained aggregates after every change and logs an error on a mismatch
+        collectionManager.setSelfCheck(Boolean.parseBoolean(System.getenv("SERVER_SELF_CHECK")));
         FileManager fileManager = new FileManager(collectionManager);
 
         final int serverPort;
@@ -23,42 +34,163 @@ public class ServerMain {
                 throw new IllegalArgumentException("Port number must be between 1 and 65535.");
             }
         } catch (NumberFormatException e) {
-            System.err.println("Invalid port number format: " + args[0]);
+            LOG.error("Invalid port number format: {}", args[0]);
             return;
         } catch (IllegalArgumentException e) {
-            System.err.println("Port error: " + e.getMessage());
+            LOG.error("Port error: {}", e.getMessage());
             return;
         }
+
+        // SHARD_INDEX/SHARD_COUNT: this server holds the persons whose id maps to its shard (see Sharding)
+        String shardIndexEnv = System.getenv("SHARD_INDEX");
+        String shardCountEnv = System.getenv("SHARD_COUNT");
+        if (shardCountEnv != null && !shardCountEnv.isBlank()) {
+            try {
+                int shardIndex = shardIndexEnv == null || shardIndexEnv.isBlank() ? 0 : Integer.parseInt(shardIndexEnv.trim());
+                collectionManager.setShard(shardIndex, Integer.parseInt(shardCountEnv.trim()));
+                LOG.info("Running as shard {} of {}.", shardIndex, collectionManager.getShardCount());
+            } catch (IllegalArgumentException e) {
+                LOG.error("Invalid SHARD_INDEX/SHARD_COUNT values: {}/{} ({})", shardIndexEnv, shardCountEnv, e.getMessage());
+                return;
+            }
+        }
+
+        // PRIMARY_ADDRESS=host:port makes this server a read-only replica of the primary replicating on that port
+        String primaryAddress = System.getenv("PRIMARY_ADDRESS");
+        boolean replica = primaryAddress != null && !primaryAddress.isBlank();
+        String primaryHost = null;
+        int primaryPort = 0;
+        if (replica) {
+            String[] parts = primaryAddress.trim().split(":");
+            try {
+                if (parts.length != 2) {
+                    throw new NumberFormatException("expected host:port");
+                }
+                primaryHost = parts[0];
+                primaryPort = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                LOG.error("Invalid PRIMARY_ADDRESS value: {} ({})", primaryAddress, e.getMessage());
+                return;
+            }
+            LOG.info("Running as a replica of {}; the collection comes from the primary.", primaryAddress);
+        } else {
+            try {
+                fileManager.loadCollectionFromXml(filePath);
+                LOG.info("Collection loaded successfully.");
+                warnAboutForeignPersons(collectionManager);
+            } catch (Exception e) {
+                LOG.error("Error loading collection: {}", e.getMessage());
+            }
+        }
+
+        // Number of selector threads sharing the port, e.g. one per core
+        int reactorCount = 1;
+        String reactorsEnv = System.getenv("SERVER_REACTORS");
+        if (reactorsEnv != null && !reactorsEnv.isBlank()) {
+            try {
+                reactorCount = Math.max(1, Integer.parseInt(reactorsEnv.trim()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid SERVER_REACTORS value: {}. Using a single reactor.", reactorsEnv);
+            }
+        }
+
+        // "fixed" (default) runs commands on a thread pool, "virtual" on virtual threads (Java 21+)
+        ExecutionMode executionMode = ExecutionMode.FIXED_POOL;
         try {
-            fileManager.loadCollectionFromXml(filePath);
-            System.out.println("Collection loaded successfully.");
-        } catch (Exception e) {
-            System.err.println("Error loading collection: " + e.getMessage());
+            executionMode = ExecutionMode.fromString(System.getenv("SERVER_EXECUTOR"));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("{}. Using the fixed thread pool.", e.getMessage());
+        }
+        // Pool size, or the cap on concurrently executing virtual threads
+        int maxConcurrency = executionMode.defaultConcurrency();
+        String concurrencyEnv = System.getenv("SERVER_MAX_CONCURRENCY");
+        if (concurrencyEnv != null && !concurrencyEnv.isBlank()) {
+            try {
+                maxConcurrency = Math.max(1, Integer.parseInt(concurrencyEnv.trim()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid SERVER_MAX_CONCURRENCY value: {}. Using {}.", concurrencyEnv, maxConcurrency);
+            }
         }
 
         // Initialize the managers and Server network
         ServerCommandManager commandManager = new ServerCommandManager(collectionManager, fileManager);
-        UDPServer server = new UDPServer(serverPort, commandManager);
+        UDPServer server = new UDPServer(serverPort, commandManager, reactorCount, executionMode, maxConcurrency);
+        // Only binary-encoded commands are accepted, so nothing reaches ObjectInputStream, unless
+        // SERVER_JAVA_SERIALIZATION=true lets old clients in (their commands still pass a class filter)
+        String javaSerializationEnv = System.getenv("SERVER_JAVA_SERIALIZATION");
+        if (javaSerializationEnv != null && !javaSerializationEnv.isBlank()) {
+            server.setJavaSerializationAllowed(Boolean.parseBoolean(javaSerializationEnv.trim()));
+        }
+
+        // A replica follows its primary; a primary with REPLICATION_PORT set streams its changes to replicas
+        AutoCloseable replication = null;
+        if (replica) {
+            commandManager.setReplicaOf(primaryHost);
+            ReplicationReplica replicaLink = new ReplicationReplica(primaryHost, primaryPort, collectionManager);
+            replicaLink.start();
+            replication = replicaLink;
+        } else {
+            String replicationPortEnv = System.getenv("REPLICATION_PORT");
+            if (replicationPortEnv != null && !replicationPortEnv.isBlank()) {
+                // The replication port has no authentication: loopback only unless REPLICATION_BIND_ADDRESS says otherwise
+                String bindAddressEnv = System.getenv("REPLICATION_BIND_ADDRESS");
+                String maxReplicasEnv = System.getenv("REPLICATION_MAX_REPLICAS");
+                try {
+                    InetAddress bindAddress = bindAddressEnv == null || bindAddressEnv.isBlank()
+                            ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddressEnv.trim());
+                    int maxReplicas = maxReplicasEnv == null || maxReplicasEnv.isBlank()
+                            ? ReplicationPrimary.DEFAULT_MAX_REPLICAS : Integer.parseInt(maxReplicasEnv.trim());
+                    ReplicationPrimary primary = new ReplicationPrimary(bindAddress, Integer.parseInt(replicationPortEnv.trim()),
+                            maxReplicas, collectionManager);
+                    primary.start();
+                    replication = primary;
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Invalid REPLICATION_PORT or REPLICATION_MAX_REPLICAS value: {}. Replication is off.", e.getMessage());
+                } catch (IOException e) {
+                    LOG.error("Error starting replication: {}. Replication is off.", e.getMessage());
+                }
+            }
+        }
+        final AutoCloseable replicationToClose = replication;
 
         // Add a shutdown hook to save data and stop the server gracefully
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            System.out.println("Server shutdown hook activated.");
-            // Save data before stopping
+            LOG.info("Server shutdown hook activated.");
+            // Save data before stopping. A replica's copy belongs to the primary, which saves it.
             try {
-                commandManager.internalSave();
-                System.out.println("Collection successfully saved on shutdown.");
+                if (!commandManager.isReplica()) {
+                    commandManager.internalSave();
+                    LOG.info("Collection successfully saved on shutdown.");
+                }
+                if (replicationToClose != null) {
+                    replicationToClose.close();
+                }
             } catch (Exception e) {
-                System.err.println("Error saving collection on shutdown: " + e.getMessage());
+                LOG.error("Error saving collection on shutdown: {}", e.getMessage());
             } finally {
                 server.stop(); // Stop the UDP server resources
+                Log.flush(); // The JVM is exiting; write out what is still buffered
             }
         }));
 
         try {
             server.start();
         } catch (IOException e) {
-            System.err.println("Error starting or running server: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error starting or running server: {}", e.getMessage(), e);
+        }
+    }
+
+    // Persons loaded from the file of another shard can still be shown, but updates for their ids are routed elsewhere
+    private static void warnAboutForeignPersons(CollectionManager collectionManager) {
+        int shardCount = collectionManager.getShardCount();
+        if (shardCount == 1) {
+            return;
+        }
+        long foreign = collectionManager.getAllPersons().stream()
+                .filter(person -> Sharding.shardOf(person.getId(), shardCount) != collectionManager.getShardIndex())
+                .count();
+        if (foreign > 0) {
+            LOG.warn("{} persons in the collection file belong to other shards.", foreign);
         }
     }
-}
\ No newline at end of file
+}
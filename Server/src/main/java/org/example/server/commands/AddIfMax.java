@@ -34,14 +34,15 @@ public class AddIfMax implements ServerCommand {
 
         if (newPerson.getHeight() > currentMaxHeight) {
             newPerson.setId(collectionManager.generateId());
-            if (collectionManager.addPerson(newPerson)) {
+            // The check is repeated atomically: another client may have added a taller person meanwhile
+            if (collectionManager.addPersonIfMax(newPerson)) {
                 return new Response(
                         "ADDED: " + newPerson.getName() + " (ID: " + newPerson.getId() + ") as its height ("
                                 + newPerson.getHeight() + ") > max height (" + currentMaxHeight + ").",
                         true
                 );
             } else {
-                return new Response("Failed to add person: " + newPerson.getName() + ". Possible internal error.", false);
+                return new Response(newPerson.getName() + " NOT ADDED: a person with greater or equal height was added concurrently.", true);
             }
         } else {
             return new Response(
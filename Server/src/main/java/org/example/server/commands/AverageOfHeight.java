@@ -1,6 +1,7 @@
 package org.example.server.commands;
 
 import org.example.common.command.AverageOfHeightCommand;
+import org.example.common.response.HeightStats;
 import org.example.common.response.Response;
 import org.example.server.manager.CollectionManager;
 
@@ -16,12 +17,12 @@ public class AverageOfHeight implements ServerCommand{
     // Takes an AverageOfHeightCommand DTO and returns a Response DTO.
 
     public Response execute(AverageOfHeightCommand commandDto) {
-        try {
-            double average = collectionManager.getAverageHeight();
-            return new Response(String.format("Average height: %.2f", average), true);
-        } catch (IllegalStateException e) {
-            return new Response(e.getMessage(), false);
+        // The partial sums travel along so that a sharded client can combine the averages of several servers
+        HeightStats stats = collectionManager.getHeightStats();
+        if (stats.getCount() == 0) {
+            return new Response("Collection is empty", false, stats);
         }
+        return new Response(String.format("Average height: %.2f", stats.getAverage()), true, stats);
     }
     @Override
     public String getDescription() {
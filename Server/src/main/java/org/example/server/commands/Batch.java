@@ -0,0 +1,38 @@
+package org.example.server.commands;
+
+import org.example.common.command.BatchCommand;
+import org.example.common.command.Command;
+import org.example.common.response.Response;
+
+import java.util.ArrayList;
+
+public class Batch implements ServerCommand {
+    public static final String DESCRIPTION = "batch: execute several commands in order (sent by execute_script)";
+
+    private final CommandExecutable executor;
+
+    public Batch(CommandExecutable executor) {
+        this.executor = executor;
+    }
+
+    // Runs every sub-command on the calling worker thread, so the whole batch costs one scheduling slot.
+    public Response execute(BatchCommand commandDto) {
+        ArrayList<Response> responses = new ArrayList<>(commandDto.getCommands().size());
+        int failed = 0;
+        for (Command command : commandDto.getCommands()) {
+            Response response = command instanceof BatchCommand
+                    ? new Response("Nested batches are not supported.", false)
+                    : executor.executeCommand(command);
+            if (!response.isSuccess()) {
+                failed++;
+            }
+            responses.add(response);
+        }
+        return new Response("Executed " + responses.size() + " commands (" + failed + " failed).", true, responses);
+    }
+
+    @Override
+    public String getDescription() {
+        return DESCRIPTION;
+    }
+}
@@ -2,10 +2,13 @@ package org.example.server.commands;
 
 import org.example.common.command.CountByLocationCommand;
 import org.example.common.data.Location;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
 import org.example.common.response.Response;
 import org.example.server.manager.CollectionManager;
 
 public class CountByLocation implements ServerCommand {
+    private static final Logger LOG = Log.getLogger(CountByLocation.class);
     public static final String DESCRIPTION = "count_by_location {location}: count the number of elements whose location field value is equal to the given one";
     private final CollectionManager collectionManager;
 
@@ -26,12 +29,11 @@ public class CountByLocation implements ServerCommand {
             Location locationToCompare = parseLocation(locationArg);
 
             long count = collectionManager.countByLocation(locationToCompare);
-            return new Response("Number of people with location " + locationToCompare + ": " + count, true);
+            return new Response("Number of people with location " + locationToCompare + ": " + count, true, count);
         } catch (IllegalArgumentException e) {
             return new Response("Error parsing location argument: " + e.getMessage(), false);
         } catch (Exception e) {
-            System.err.println("Server count_by_location error: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Server count_by_location error: {}", e.getMessage(), e);
             return new Response("An unexpected error occurred while counting by location: " + e.getMessage(), false);
         }
     }
@@ -19,7 +19,7 @@ public class Info implements ServerCommand{
         infoBuilder.append("Initialization Date: ").append(collectionManager.getInitializationDate()).append("\n");
         infoBuilder.append("Number of persons in collection: ").append(collectionManager.getElementCount());
 
-        return new Response(infoBuilder.toString(), true);
+        return new Response(infoBuilder.toString(), true, collectionManager.getElementCount());
     }
     @Override
     public String getDescription() {
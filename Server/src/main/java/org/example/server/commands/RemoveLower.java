@@ -32,7 +32,7 @@ public class RemoveLower implements ServerCommand {
 
         try {
             List<Person> removedPersons = collectionManager.removeLower(thresholdPerson);
-            return new Response("Removed " + removedPersons.size() + " persons.", true);
+            return new Response("Removed " + removedPersons.size() + " persons.", true, removedPersons.size());
         } catch (Exception e) {
             return new Response("Error during remove_lower command: " + e.getMessage(), false);
         }
@@ -2,13 +2,16 @@ package org.example.server.commands;
 
 import org.example.common.command.ShowCommand;
 import org.example.common.data.Person;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
 import org.example.common.response.Response;
 import org.example.server.manager.CollectionManager;
 
 import java.util.List;
 
 public class Show implements ServerCommand{
-    private static final String DESCRIPTION = "show: print all elements of the collection to standard output";
+    private static final String DESCRIPTION = "show [pageSize] [cursor]: print all elements of the collection to standard output, or one page of them;"
+            + " show since [token]: only what changed since an earlier 'show since'";
     private final CollectionManager collectionManager;
 
     public Show(CollectionManager collectionManager) {
@@ -18,6 +21,14 @@ public class Show implements ServerCommand{
      //Takes a ShowCommand DTO and returns a Response DTO with the list of persons.
 
     public Response execute(ShowCommand commandDto) {
+        String arg = commandDto.getArg();
+        if (arg != null && !arg.isBlank()) {
+            String[] args = arg.trim().split("\\s+");
+            if (args[0].equals(ShowCommand.SINCE)) {
+                return executeSince(args.length > 1 ? args[1] : null);
+            }
+            return executePage(args);
+        }
         List<Person> persons = collectionManager.getAllPersons();
         if (persons.isEmpty()) {
             return new Response("The collection is empty.", true);
@@ -26,8 +37,46 @@ public class Show implements ServerCommand{
         // Return the list of persons in the data payload
         return new Response("DISPLAYING THE COLLECTION DATA:", true, persons);
     }
+
+    // show pageSize [cursor]: one page, so memory and response size stay bounded for any collection size
+    private Response executePage(String[] args) {
+        int pageSize;
+        Double cursor = null;
+        try {
+            pageSize = Integer.parseInt(args[0]);
+            if (args.length > 1) {
+                cursor = Double.parseDouble(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            return new Response("Usage: show [pageSize] [cursor]. " + e.getMessage(), false);
+        }
+        if (pageSize < 1 || pageSize > ShowCommand.MAX_PAGE_SIZE) {
+            return new Response("Page size must be between 1 and " + ShowCommand.MAX_PAGE_SIZE + ".", false);
+        }
+
+        PersonPage page = collectionManager.getPage(cursor, pageSize);
+        if (page.getTotalCount() == 0) {
+            return new Response("The collection is empty.", true);
+        }
+        return new Response("DISPLAYING " + page.getPersons().size() + " OF " + page.getTotalCount() + " PERSONS:", true, page);
+    }
+
+    // show since [token]: the changes after the token, or everything when there is no usable token
+    private Response executeSince(String token) {
+        PersonDelta delta = collectionManager.getChangesSince(token);
+        String message;
+        if (delta.isFullResync()) {
+            message = "FULL RESYNC, " + delta.getChanged().size() + " PERSONS:";
+        } else if (delta.isUpToDate()) {
+            message = "Up to date.";
+        } else {
+            message = delta.getChanged().size() + " CHANGED, " + delta.getRemovedIds().size() + " REMOVED:";
+        }
+        return new Response(message, true, delta);
+    }
+
     @Override
     public String getDescription() {
         return DESCRIPTION;
     }
-}
\ No newline at end of file
+}
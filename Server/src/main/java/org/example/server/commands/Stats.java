@@ -0,0 +1,104 @@
+package org.example.server.commands;
+
+import org.example.common.command.StatsCommand;
+import org.example.common.data.Coordinates;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+import org.example.common.log.Log;
+import org.example.common.response.Response;
+import org.example.server.manager.CollectionManager;
+import org.example.server.metrics.CommandMetrics;
+import org.example.server.metrics.LatencyHistogram;
+import org.example.server.metrics.ServerMetrics;
+
+import java.util.List;
+import java.util.Map;
+
+public class Stats implements ServerCommand {
+    public static final String DESCRIPTION = "stats: print server metrics (requests and latencies per command, queue depth, traffic, collection size)";
+    private static final int FOOTPRINT_SAMPLE = 64; // Persons measured to estimate the heap used by the collection
+
+    private final ServerMetrics metrics;
+    private final CollectionManager collectionManager;
+
+    public Stats(ServerMetrics metrics, CollectionManager collectionManager) {
+        this.metrics = metrics;
+        this.collectionManager = collectionManager;
+    }
+
+    public Response execute(StatsCommand commandDto) {
+        StringBuilder stats = new StringBuilder();
+        long uptimeSeconds = Math.max(1, metrics.getUptimeMillis() / 1000);
+        stats.append("Uptime: ").append(uptimeSeconds).append(" s\n");
+
+        stats.append("Executor: ").append(metrics.getQueueDepth()).append(" queued, ")
+                .append(metrics.getExecuting()).append(" executing\n");
+        stats.append("Received: ").append(metrics.getDatagramsReceived()).append(" datagrams, ")
+                .append(metrics.getBytesReceived()).append(" bytes\n");
+        stats.append("Sent: ").append(metrics.getDatagramsSent()).append(" datagrams, ")
+                .append(metrics.getBytesSent()).append(" bytes\n");
+        stats.append("Turned away: ").append(metrics.getRateLimited()).append(" over rate limit, ")
+                .append(metrics.getQueueFull()).append(" queue full; ")
+                .append(metrics.getDroppedResponses()).append(" responses dropped, ")
+                .append(metrics.getStillRunning()).append(" answered \"still running\"\n");
+        stats.append("Deserialization: ").append(metrics.getDeserialization().summary()).append("\n");
+        stats.append("Serialization: ").append(metrics.getSerialization().summary()).append("\n");
+        stats.append("Log: level ").append(Log.getLevel()).append(", ").append(Log.getDropped()).append(" messages dropped\n");
+
+        int size = collectionManager.getElementCount();
+        stats.append("Collection: ").append(size).append(" persons, ~")
+                .append(estimateHeapBytes(size) / 1024).append(" KB on the heap\n");
+
+        stats.append("Commands:");
+        for (Map.Entry<String, CommandMetrics> entry : metrics.getCommands().entrySet()) {
+            CommandMetrics command = entry.getValue();
+            LatencyHistogram execution = command.getExecution();
+            stats.append(String.format("%n  %-18s %8d requests (%.1f/s), %d failed%n    queue wait: %s%n    execution:  %s",
+                    entry.getKey(), command.getRequests(), (double) command.getRequests() / uptimeSeconds,
+                    command.getFailures(), command.getQueueWait().summary(), execution.summary()));
+        }
+        return new Response(stats.toString(), true);
+    }
+
+    // Average shallow sizes of a sample, times the collection size. Assumes a 64-bit JVM with compressed oops.
+    private long estimateHeapBytes(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        List<Person> sample = collectionManager.getPage(null, FOOTPRINT_SAMPLE).getPersons();
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        long sampleBytes = 0;
+        for (Person person : sample) {
+            sampleBytes += estimatePersonBytes(person);
+        }
+        return sampleBytes / sample.size() * size;
+    }
+
+    private static long estimatePersonBytes(Person person) {
+        long bytes = 40; // TreeMap entry
+        bytes += 48; // Person
+        bytes += 16 + 16; // Integer id, Double height
+        bytes += 72; // LocalDateTime with its LocalDate and LocalTime
+        bytes += stringBytes(person.getName());
+        Coordinates coordinates = person.getCoordinates();
+        if (coordinates != null) {
+            bytes += 24 + 16;
+        }
+        Location location = person.getLocation();
+        if (location != null) {
+            bytes += 24 + 16 + stringBytes(location.getName());
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 24 + 16 + value.length();
+    }
+
+    @Override
+    public String getDescription() {
+        return DESCRIPTION;
+    }
+}
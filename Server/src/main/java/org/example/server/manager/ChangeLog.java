@@ -0,0 +1,124 @@
+package org.example.server.manager;
+
+import org.example.common.data.Person;
+import org.example.common.response.PersonDelta;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Version counter and the most recent changes of the collection, for 'show since <token>'.
+// Fed as a MutationListener, i.e. under the CollectionManager's write lock; since() is called under its read lock.
+// A sync token is "<epoch>-<version>". The epoch is random per server run, so a token from before a restart or
+// from another server (a replica counts its own versions) leads to a full resync instead of a wrong delta.
+final class ChangeLog implements MutationListener {
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong() & Long.MAX_VALUE);
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>(); // Oldest first, consecutive versions
+    private long version; // Of the latest change
+    private long floor; // Every change after this version is still in the log
+
+    ChangeLog(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void onPut(Person person) {
+        append(person.getId(), person);
+    }
+
+    @Override
+    public void onRemove(Person person) {
+        append(person.getId(), null);
+    }
+
+    // Nothing before a clear or reset can be replayed; clients holding older tokens resync.
+    @Override
+    public void onClear() {
+        restart();
+    }
+
+    @Override
+    public void onReset(List<Person> persons) {
+        restart();
+    }
+
+    String currentToken() {
+        return epoch + "-" + version;
+    }
+
+    // The changes after the token's version, or the whole collection when the token cannot be served from the log
+    // or the delta would not be smaller than the collection.
+    PersonDelta since(String token, Collection<Person> collection) {
+        long since = parse(token);
+        if (since == version) {
+            return new PersonDelta(currentToken(), false, List.of(), List.of());
+        }
+        if (since < floor || since > version || version - since > collection.size()) {
+            return new PersonDelta(currentToken(), true, new ArrayList<>(collection), List.of());
+        }
+        // Newest first, so the first entry seen for an id is its current state
+        Map<Integer, Person> latest = new LinkedHashMap<>();
+        Iterator<Entry> newestFirst = entries.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Entry entry = newestFirst.next();
+            if (entry.version <= since) {
+                break;
+            }
+            if (!latest.containsKey(entry.id)) { // Not putIfAbsent: that would overwrite a removal's null
+                latest.put(entry.id, entry.person);
+            }
+        }
+        List<Person> changed = new ArrayList<>();
+        List<Integer> removedIds = new ArrayList<>();
+        latest.forEach((id, person) -> {
+            if (person != null) {
+                changed.add(person);
+            } else {
+                removedIds.add(id);
+            }
+        });
+        return new PersonDelta(currentToken(), false, changed, removedIds);
+    }
+
+    // The version in a token of this run, -1 for anything else
+    private long parse(String token) {
+        if (token == null || !token.startsWith(epoch + "-")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void append(Integer id, Person person) {
+        entries.addLast(new Entry(++version, id, person));
+        if (entries.size() > capacity) {
+            floor = entries.removeFirst().version;
+        }
+    }
+
+    private void restart() {
+        entries.clear();
+        floor = ++version;
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final Integer id;
+        private final Person person; // null for a removal
+
+        private Entry(long version, Integer id, Person person) {
+            this.version = version;
+            this.id = id;
+            this.person = person;
+        }
+    }
+}
@@ -2,48 +2,193 @@ package org.example.server.manager;
 
 import org.example.common.data.Location;
 import org.example.common.data.Person;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.response.HeightStats;
+import org.example.common.response.PersonDelta;
+import org.example.common.response.PersonPage;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Commands are executed concurrently by the server's worker pool, so every access to the
+// TreeSet goes through the read/write lock: queries share the read lock, mutations are exclusive.
+// Every successful mutation is also reported to the MutationListeners (replication, the change log) under the write lock.
+// The aggregates (height sum, person with the highest id) are kept up to date by every mutation, so average_of_height,
+// max_by_id and add_if_max do not walk the collection; the maximum height is the last element of the height-ordered set.
+// Ids are unique: the PersonIdIndex next to the set finds a person by id in constant time, and new ids come from a
+// sequence above the highest id ever held, so neither lookups nor id generation depend on the collection size.
 public class CollectionManager {
+    private static final Logger LOG = Log.getLogger(CollectionManager.class);
+    private static final int CHANGE_LOG_CAPACITY = 10_000; // Changes kept for 'show since'; older tokens resync
+    private static final int MAX_ID_PROBES = 64; // Ids below a removed highest one looked up before a full scan
     private final TreeSet<Person> personTreeSet;
     private final LocalDateTime initializationDate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MutationListener> listeners = new CopyOnWriteArrayList<>();
+    private final ChangeLog changeLog = new ChangeLog(CHANGE_LOG_CAPACITY);
+    private final PersonIdIndex idIndex = new PersonIdIndex(); // Guarded by the lock like the set
+    private final AtomicLong nextId = new AtomicLong(1); // Next id generateId hands out, always one of this shard
+    private volatile int shardIndex = 0; // In cluster mode only ids of this shard are generated
+    private volatile int shardCount = 1;
+    private double heightSum; // Guarded by the lock like the set
+    private Person maxIdPerson; // null if the collection is empty or after the holder was removed (rescanned then)
+    private int removedMaxId; // Id of the last holder removed; every remaining id is below it
+    private volatile boolean selfCheck; // Verify the aggregates against a full recount after every mutation
+    private volatile long selfCheckFailures; // Mutations after which the self-check found a difference
 
     public CollectionManager() {
 
         this.personTreeSet = new TreeSet<>();
         this.initializationDate = LocalDateTime.now();
+        listeners.add(changeLog);
     }
 
     // Set the collection
     public void setPersonTreeSet(TreeSet<Person> loadedCollection) {
         if (loadedCollection != null) {
-            personTreeSet.clear();
-            personTreeSet.addAll(loadedCollection);
+            lock.writeLock().lock();
+            try {
+                personTreeSet.clear();
+                idIndex.clear();
+                heightSum = 0;
+                maxIdPerson = null;
+                int skipped = 0;
+                for (Person person : loadedCollection) {
+                    if (person.getId() == null || idIndex.containsKey(person.getId()) || !personTreeSet.add(person)) {
+                        skipped++;
+                    } else {
+                        tracked(person);
+                    }
+                }
+                if (skipped > 0) {
+                    LOG.warn("Skipped {} loaded persons without an id of their own.", skipped);
+                }
+                afterMutation();
+                if (!listeners.isEmpty()) {
+                    List<Person> persons = new ArrayList<>(personTreeSet);
+                    listeners.forEach(listener -> listener.onReset(persons));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    // Registers the listener and returns the collection it starts from. Both happen under the lock,
+    // so the listener sees exactly the changes made after the returned snapshot.
+    public List<Person> snapshotAndListen(MutationListener listener) {
+        lock.readLock().lock();
+        try {
+            listeners.add(listener);
+            return new ArrayList<>(personTreeSet);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
+    public void removeListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
 
     public List<Person> getAllPersons() {
-        return new ArrayList<>(personTreeSet);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(personTreeSet);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // What changed after the state the token stands for; see ChangeLog. Only the delta is copied.
+    public PersonDelta getChangesSince(String syncToken) {
+        lock.readLock().lock();
+        try {
+            return changeLog.since(syncToken, personTreeSet);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Walks the ordered set from just after the person with height 'afterHeight' (from the start if null)
+    // and copies at most 'limit' persons. Only the page is copied, never the collection.
+    // The set is ordered by height, so the height of the last person on a page is the cursor of the next one.
+    public PersonPage getPage(Double afterHeight, int limit) {
+        lock.readLock().lock();
+        try {
+            Iterable<Person> from = personTreeSet;
+            if (afterHeight != null) {
+                Person cursor = new Person();
+                cursor.setHeight(afterHeight);
+                from = personTreeSet.tailSet(cursor, false);
+            }
+            List<Person> page = new ArrayList<>(Math.min(limit, personTreeSet.size()));
+            Iterator<Person> iterator = from.iterator();
+            while (page.size() < limit && iterator.hasNext()) {
+                page.add(iterator.next());
+            }
+            String nextCursor = iterator.hasNext() && !page.isEmpty()
+                    ? Double.toString(page.get(page.size() - 1).getHeight()) : null;
+            return new PersonPage(page, nextCursor, personTreeSet.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    // Makes generateId return only ids that Sharding.shardOf maps to the given shard.
+    public void setShard(int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard index must be between 0 and " + (shardCount - 1) + ".");
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        nextId.set(alignToShard(nextId.get()));
     }
 
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
 
+    // Takes the next id of the sequence without locking the collection. The sequence starts above the highest id
+    // loaded, received from the primary or set by a client and never goes back, so an id is not handed out twice
+    // even after its person was removed. Only once the ints are used up are free ids searched for at random.
     public int generateId() {
-        Random random = new Random();
-        int id;
-        List<Integer> existingIds = personTreeSet.stream()
-                .map(Person::getId)
-                .collect(Collectors.toList());
-        do {
-            id = random.nextInt(Integer.MAX_VALUE) + 1;
-        } while (existingIds.contains(id));
-        return id;
+        long id = nextId.getAndAdd(shardCount);
+        if (id <= Integer.MAX_VALUE) {
+            return (int) id;
+        }
+        lock.readLock().lock();
+        try {
+            int candidate;
+            do {
+                candidate = (int) alignToShard(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE - shardCount) + 1);
+            } while (idIndex.containsKey(candidate));
+            return candidate;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The smallest id from 'id' on that Sharding.shardOf maps to this shard
+    private long alignToShard(long id) {
+        return id + Math.floorMod(shardIndex - Math.floorMod(id, shardCount), shardCount);
     }
 
 
@@ -52,25 +197,76 @@ public class CollectionManager {
         if (person.getId() == null || person.getId() <= 0) {
             person.setId(generateId());
         }
-        return personTreeSet.add(person);
+        lock.writeLock().lock();
+        try {
+            if (idIndex.containsKey(person.getId()) || !personTreeSet.add(person)) {
+                return false;
+            }
+            tracked(person);
+            afterMutation();
+            listeners.forEach(listener -> listener.onPut(person));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds the person only if it is taller than everybody in the collection.
+    // Check and insert happen under one write lock so two concurrent add_if_max cannot both win.
+    public boolean addPersonIfMax(Person person) {
+        lock.writeLock().lock();
+        try {
+            if (!personTreeSet.isEmpty() && person.getHeight() <= personTreeSet.last().getHeight()) {
+                return false;
+            }
+            return addPerson(person);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 
+    // Removes the person of the same height. The argument may be a copy (replication), so the index and
+    // the listeners are given the stored instance.
     public boolean removePerson(Person person) {
-        return personTreeSet.remove(person);
+        lock.writeLock().lock();
+        try {
+            Person stored = personTreeSet.ceiling(person);
+            if (stored == null || stored.compareTo(person) != 0) {
+                return false;
+            }
+            personTreeSet.remove(stored);
+            untracked(stored);
+            afterMutation();
+            listeners.forEach(listener -> listener.onRemove(stored));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 
     public void clear() {
-        ArrayList<Person> personList = new ArrayList<>(personTreeSet);
-        personList.forEach(personTreeSet::remove);
+        lock.writeLock().lock();
+        try {
+            personTreeSet.clear();
+            idIndex.clear();
+            heightSum = 0;
+            maxIdPerson = null;
+            afterMutation();
+            listeners.forEach(MutationListener::onClear);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Person getMaxById() {
-        if (personTreeSet.isEmpty()) {
-            return null;
+        lock.readLock().lock();
+        try {
+            return maxIdPerson;
+        } finally {
+            lock.readLock().unlock();
         }
-        return personTreeSet.last();
     }
 
 
@@ -78,29 +274,39 @@ public class CollectionManager {
         if (targetLocation == null) {
             return 0;
         }
-        long count = 0;
-        for (Person person : personTreeSet) {
-            Location personLocation = person.getLocation();
-            if (personLocation == null) {
-                continue;
-            }
-            // Handle nullable String name
-            boolean nameMatch;
-            if (targetLocation.getName() == null) {
-                nameMatch = (personLocation.getName() == null); // Match if both are null
-            } else {
-                nameMatch = (personLocation.getName() != null && targetLocation.getName().equalsIgnoreCase(personLocation.getName()));
-            }
-            if (nameMatch) {
-                count++;
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (Person person : personTreeSet) {
+                Location personLocation = person.getLocation();
+                if (personLocation == null) {
+                    continue;
+                }
+                // Handle nullable String name
+                boolean nameMatch;
+                if (targetLocation.getName() == null) {
+                    nameMatch = (personLocation.getName() == null); // Match if both are null
+                } else {
+                    nameMatch = (personLocation.getName() != null && targetLocation.getName().equalsIgnoreCase(personLocation.getName()));
+                }
+                if (nameMatch) {
+                    count++;
+                }
             }
+            return count;
+        } finally {
+            lock.readLock().unlock();
         }
-        return count;
     }
 
 
     public Person getById(int id) {
-        return personTreeSet.stream().filter(p -> p.getId() != null && p.getId() == id).findFirst().orElse(null);
+        lock.readLock().lock();
+        try {
+            return idIndex.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
@@ -117,40 +323,194 @@ public class CollectionManager {
 
 
     public int getElementCount() {
-        return personTreeSet.size();
+        lock.readLock().lock();
+        try {
+            return personTreeSet.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
 
 
     public List<Person> removeLower(Person threshold) {
-        TreeSet<Person> lower = new TreeSet<>(personTreeSet.headSet(threshold));
-        personTreeSet.removeAll(lower);
-        return new ArrayList<>(lower);
+        lock.writeLock().lock();
+        try {
+            TreeSet<Person> lower = new TreeSet<>(personTreeSet.headSet(threshold));
+            personTreeSet.removeAll(lower);
+            lower.forEach(this::untracked);
+            afterMutation();
+            for (Person removed : lower) {
+                listeners.forEach(listener -> listener.onRemove(removed));
+            }
+            return new ArrayList<>(lower);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 
 
     public double getMaxHeight() {
-        return personTreeSet.stream().mapToDouble(Person::getHeight).max().orElse(0.0);
+        lock.readLock().lock();
+        try {
+            return personTreeSet.isEmpty() ? 0.0 : personTreeSet.last().getHeight();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Sum, count and maximum of the heights, taken under one lock so that they are consistent with each other.
+    public HeightStats getHeightStats() {
+        lock.readLock().lock();
+        try {
+            double max = personTreeSet.isEmpty() ? 0 : personTreeSet.last().getHeight();
+            return new HeightStats(heightSum, personTreeSet.size(), max);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public double getAverageHeight() {
-        if (personTreeSet.isEmpty()) {
-            throw new IllegalStateException("Collection is empty");
+        lock.readLock().lock();
+        try {
+            if (personTreeSet.isEmpty()) {
+                throw new IllegalStateException("Collection is empty");
+            }
+            return heightSum / personTreeSet.size();
+        } finally {
+            lock.readLock().unlock();
         }
-        return personTreeSet.stream().mapToDouble(Person::getHeight).average().orElse(0.0);
     }
 
 
     public boolean updatePerson(int id, Person updatedPerson) {
-        Person existing = getById(id);
-        if (existing != null) {
-            personTreeSet.remove(existing);
-            updatedPerson.setId(id);
-            personTreeSet.add(updatedPerson);
-            return true;
+        lock.writeLock().lock();
+        try {
+            Person existing = idIndex.get(id);
+            if (existing != null) {
+                personTreeSet.remove(existing);
+                untracked(existing);
+                updatedPerson.setId(id);
+                boolean added = personTreeSet.add(updatedPerson);
+                if (added) {
+                    tracked(updatedPerson);
+                }
+                afterMutation();
+                listeners.forEach(listener -> listener.onRemove(existing));
+                if (added) {
+                    listeners.forEach(listener -> listener.onPut(updatedPerson));
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Turns on checking the aggregates against a full recount after every mutation (O(n) each, for tests).
+    // A difference is logged and counted; the mutation itself has happened and is not failed.
+    public void setSelfCheck(boolean selfCheck) {
+        this.selfCheck = selfCheck;
+    }
+
+    public long getSelfCheckFailures() {
+        return selfCheckFailures;
+    }
+
+    // Recounts the aggregates and checks the id index; throws IllegalStateException if anything differs.
+    public void verifyAggregates() {
+        lock.readLock().lock();
+        try {
+            checkAggregates();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Updates the index, the sequence and the aggregates for a person just added to the set
+    private void tracked(Person person) {
+        idIndex.put(person.getId(), person);
+        nextId.accumulateAndGet(alignToShard(person.getId() + 1L), Math::max);
+        heightSum += person.getHeight();
+        if (maxIdPerson == null || person.getId() > maxIdPerson.getId()) {
+            maxIdPerson = person;
+        }
+    }
+
+    private void untracked(Person person) {
+        idIndex.remove(person.getId());
+        heightSum -= person.getHeight();
+        if (maxIdPerson != null && maxIdPerson.getId().equals(person.getId())) {
+            maxIdPerson = null;
+            removedMaxId = person.getId();
+        }
+    }
+
+    // Called under the write lock once a mutation is applied, before the listeners are notified.
+    // After the person with the highest id was removed, the next one is looked up in the index just below its id
+    // (generated ids are dense); only if none is close is the set scanned, once per mutation however many persons
+    // it removed.
+    private void afterMutation() {
+        if (personTreeSet.isEmpty()) {
+            heightSum = 0; // Drops the rounding error accumulated by the subtractions
+        } else if (maxIdPerson == null) {
+            maxIdPerson = findMaxIdPersonBelow(removedMaxId);
+        }
+        if (selfCheck) {
+            try {
+                checkAggregates();
+            } catch (IllegalStateException e) {
+                selfCheckFailures++;
+                LOG.error("Aggregate self-check failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Person findMaxIdPersonBelow(int id) {
+        for (long candidate = id - 1L; candidate >= Math.max(Integer.MIN_VALUE, id - (long) MAX_ID_PROBES); candidate--) {
+            Person person = idIndex.get((int) candidate);
+            if (person != null) {
+                return person;
+            }
+        }
+        return findMaxIdPerson();
+    }
+
+    private Person findMaxIdPerson() {
+        Person max = null;
+        for (Person person : personTreeSet) {
+            if (max == null || person.getId() > max.getId()) {
+                max = person;
+            }
+        }
+        return max;
+    }
+
+    private void checkAggregates() {
+        double sum = 0;
+        double magnitude = 0;
+        for (Person person : personTreeSet) {
+            sum += person.getHeight();
+            magnitude += Math.abs(person.getHeight());
+            if (idIndex.get(person.getId()) != person) {
+                throw new IllegalStateException("Person " + person.getId() + " is missing from the id index.");
+            }
+        }
+        if (idIndex.size() != personTreeSet.size()) {
+            throw new IllegalStateException("Id index holds " + idIndex.size() + " persons, the set " + personTreeSet.size() + ".");
+        }
+        // The running sum may differ from a fresh one by the rounding of the additions and subtractions
+        if (Math.abs(sum - heightSum) > 1e-9 * Math.max(1, magnitude)) {
+            throw new IllegalStateException("Height sum is " + heightSum + ", recounted " + sum + ".");
+        }
+        Person max = findMaxIdPerson();
+        if (max == null ? maxIdPerson != null : maxIdPerson == null || !max.getId().equals(maxIdPerson.getId())) {
+            throw new IllegalStateException("Person with the highest id is "
+                    + (maxIdPerson == null ? "none" : maxIdPerson.getId()) + ", recounted "
+                    + (max == null ? "none" : max.getId()) + ".");
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package org.example.server.manager;
 
 import org.example.common.data.Person;
 import org.example.common.data.PersonList;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -12,6 +14,7 @@ import java.util.List;
 import java.util.TreeSet;
 
 public class FileManager {
+    private static final Logger LOG = Log.getLogger(FileManager.class);
     private final CollectionManager collectionManager;
 
     public FileManager(CollectionManager collectionManager) {
@@ -32,7 +35,7 @@ public class FileManager {
             TreeSet<Person> loadedCollection = new TreeSet<>(persons);
             collectionManager.setPersonTreeSet(loadedCollection);
         } catch (JAXBException e) {
-            System.out.println("Error loading collection: " + e.getMessage());
+            LOG.error("Error loading collection: {}", e.getMessage());
         }
     }
 
@@ -47,9 +50,9 @@ public class FileManager {
 
             PersonList personList = new PersonList(collectionManager.getAllPersons());
             marshaller.marshal(personList, new File(filePath));
-            System.out.println("Collection saved successfully!");
+            LOG.info("Collection saved successfully!");
         } catch (Exception e) {
-            System.out.println("Error saving collection: " + e.getMessage());
+            LOG.error("Error saving collection: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package org.example.server.manager;
+
+import org.example.common.data.Person;
+
+import java.util.List;
+
+// Told about every change of the collection, in the order the changes were applied.
+// Called while CollectionManager holds its write lock, so implementations must only hand the change off
+// (e.g. to a queue) and never block or call back into the CollectionManager.
+public interface MutationListener {
+    void onPut(Person person);
+
+    void onRemove(Person person);
+
+    void onClear();
+
+    // The whole collection was replaced, e.g. loaded from the XML file
+    void onReset(List<Person> persons);
+}
@@ -0,0 +1,126 @@
+package org.example.server.manager;
+
+import org.example.common.data.Person;
+
+import java.util.Arrays;
+
+// Hash index id -> Person on primitive arrays: no Integer keys, no entry objects, about 11 bytes per person at the
+// maximum load. Open addressing with linear probing; a slot is taken when its value is not null, so every int is a
+// valid key. Removal shifts the following entries back instead of leaving tombstones, so lookups stay short
+// however many persons come and go. Not thread-safe: CollectionManager guards it with its lock.
+final class PersonIdIndex {
+    private static final int INITIAL_CAPACITY = 64; // Power of two
+    private static final float MAX_LOAD = 0.75f;
+
+    private int[] keys;
+    private Person[] values;
+    private int size;
+    private int shift; // 32 - log2(capacity), for the multiplicative hash
+
+    PersonIdIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Person get(int id) {
+        int mask = keys.length - 1;
+        for (int slot = slot(id); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    // Returns the person previously stored under the id, or null.
+    Person put(int id, Person person) {
+        if (person == null) {
+            throw new IllegalArgumentException("The index does not hold null values.");
+        }
+        int mask = keys.length - 1;
+        int slot = slot(id);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                Person previous = values[slot];
+                values[slot] = person;
+                return previous;
+            }
+        }
+        keys[slot] = id;
+        values[slot] = person;
+        if (++size > keys.length * MAX_LOAD) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    Person remove(int id) {
+        int mask = keys.length - 1;
+        int slot = slot(id);
+        while (values[slot] != null && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        Person removed = values[slot];
+        if (removed == null) {
+            return null;
+        }
+        // Move back every following entry of the probe run that could not be found any more with a gap at 'slot'
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            boolean reachable = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!reachable) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        if (keys.length > INITIAL_CAPACITY) {
+            allocate(INITIAL_CAPACITY); // Give the memory of a large collection back
+        } else {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    // Fibonacci hashing: sequential ids, the common case, spread over the whole table
+    private int slot(int id) {
+        return (id * 0x9E3779B9) >>> shift;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Person[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Person[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+}
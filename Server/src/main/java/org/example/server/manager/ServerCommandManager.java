@@ -1,9 +1,12 @@
 package org.example.server.manager;
 
 import org.example.common.command.*;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
 import org.example.common.response.Response;
 import org.example.server.commands.*;
 import org.example.server.commands.CommandExecutable;
+import org.example.server.metrics.ServerMetrics;
 
 import java.util.*;
 import java.util.function.Function;
@@ -11,8 +14,14 @@ import java.util.function.Function;
 // This class acts as the central dispatcher for server-side commands.
 // It maps incoming Command DTOs to the correct server-side command logic.
 public class ServerCommandManager implements CommandExecutable {
+    private static final Logger LOG = Log.getLogger(ServerCommandManager.class);
+    // Commands that change the collection; a replica turns them away
+    private static final Set<String> WRITE_COMMANDS = Set.of(
+            "add", "add_if_max", "update", "remove_by_id", "remove_lower", "clear");
     private final CollectionManager collectionManager;
     private final FileManager fileManager;
+    private final ServerMetrics metrics = new ServerMetrics(); // Filled in by the network layer, read by 'stats'
+    private volatile String primaryHost; // Set when this server is a read-only replica
     private final LinkedList<String> commandHistory = new LinkedList<>();
     private final Map<String, Function<Command, Response>> commandHandlers = new HashMap<>();
 
@@ -41,6 +50,8 @@ public class ServerCommandManager implements CommandExecutable {
         RemoveLower removeLowerCmd = new RemoveLower(collectionManager);
         Show showCmd = new Show(collectionManager);
         Help helpCmd = new Help(this);
+        Batch batchCmd = new Batch(this);
+        Stats statsCmd = new Stats(metrics, collectionManager);
 
 
         // Each lambda performs the necessary type casting and calls the specific command's execute method.
@@ -50,13 +61,17 @@ public class ServerCommandManager implements CommandExecutable {
         registerServerCommand("clear", cmd -> clearCmd.execute((ClearCommand) cmd), clearCmd);
         registerServerCommand("count_by_location", countByLocationCmd::execute, countByLocationCmd);
         registerServerCommand("help", cmd -> helpCmd.execute((HelpCommand) cmd), helpCmd);
-        registerServerCommand("history", cmd -> historyCmd.execute((HistoryCommand) cmd, new ArrayList<>(commandHistory)), historyCmd);
+        registerServerCommand("history", cmd -> historyCmd.execute((HistoryCommand) cmd, getHistorySnapshot()), historyCmd);
         registerServerCommand("info", cmd -> infoCmd.execute((InfoCommand) cmd), infoCmd);
         registerServerCommand("max_by_id", cmd -> maxByIdCmd.execute((MaxByIdCommand) cmd), maxByIdCmd);
         registerServerCommand("remove_by_id", cmd -> removeByIdCmd.execute((RemoveByIdCommand) cmd), removeByIdCmd);
         registerServerCommand("remove_lower", cmd -> removeLowerCmd.execute((RemoveLowerCommand) cmd), removeLowerCmd);
         registerServerCommand("show", cmd -> showCmd.execute((ShowCommand) cmd), showCmd);
+        registerServerCommand("stats", cmd -> statsCmd.execute((StatsCommand) cmd), statsCmd);
         registerServerCommand("update", cmd -> updateCmd.execute((UpdateCommand) cmd), updateCmd);
+
+        // Envelope used by execute_script; not listed by help
+        commandHandlers.put("batch", cmd -> batchCmd.execute((BatchCommand) cmd));
     }
 
     // Helper method to register commands consistently
@@ -76,13 +91,20 @@ public class ServerCommandManager implements CommandExecutable {
         Function<Command, Response> handler = commandHandlers.get(commandName);
 
         if (handler != null) {
-            addToHistory(commandName);
+            String primary = primaryHost;
+            if (primary != null && WRITE_COMMANDS.contains(commandName)) {
+                return new Response(Response.READ_ONLY_REPLICA + " Send '" + commandName
+                        + "' to the primary server on " + primary + ".", false);
+            }
+            if (!(commandDto instanceof BatchCommand)) {
+                addToHistory(commandName); // The commands inside a batch are recorded one by one
+            }
             try {
                 return handler.apply(commandDto);
             } catch (ClassCastException e) {
                 return new Response("Internal server error: Mismatched command DTO type for '" + commandName + "'. " + e.getMessage(), false);
             } catch (Exception e) {
-                System.err.println("Error executing command '" + commandName + "': " + e.getMessage());
+                LOG.error("Error executing command '{}': {}", commandName, e.getMessage(), e);
                 return new Response("Server error during command execution: " + e.getMessage(), false);
             }
         } else {
@@ -90,6 +112,27 @@ public class ServerCommandManager implements CommandExecutable {
         }
     }
 
+    // Makes this server a read-only replica; writes are rejected with a pointer to the primary
+    public void setReplicaOf(String primaryHost) {
+        this.primaryHost = primaryHost;
+    }
+
+    // Whether executing the command can change the collection; a batch does if any of its commands does
+    public boolean isWriteCommand(Command command) {
+        if (command instanceof BatchCommand) {
+            return ((BatchCommand) command).getCommands().stream().anyMatch(this::isWriteCommand);
+        }
+        return command.getName() != null && WRITE_COMMANDS.contains(command.getName().toLowerCase());
+    }
+
+    public boolean isReplica() {
+        return primaryHost != null;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
     // Commands Descriptions GETTER
     public Map<String, String> getCommandDescriptions() {
         Map<String, String> descriptions = new TreeMap<>();
@@ -97,10 +140,18 @@ public class ServerCommandManager implements CommandExecutable {
         return descriptions;
     }
 
-    // Helper method for 'History'
+    // Helper method for 'History'. Commands run on several worker threads, so the list is guarded.
     public void addToHistory(String cmdName) {
-        if (commandHistory.size() == 7) commandHistory.removeFirst();
-        commandHistory.add(cmdName);
+        synchronized (commandHistory) {
+            if (commandHistory.size() == 7) commandHistory.removeFirst();
+            commandHistory.add(cmdName);
+        }
+    }
+
+    private List<String> getHistorySnapshot() {
+        synchronized (commandHistory) {
+            return new ArrayList<>(commandHistory);
+        }
     }
 
     // Method for server-internal save, not exposed to client commands
@@ -111,9 +162,9 @@ public class ServerCommandManager implements CommandExecutable {
                 throw new IllegalArgumentException("COLLECTION_FILE_PATH environment variable not set.");
             }
             fileManager.saveCollectionToXml(filePath);
-            System.out.println("Collection successfully saved to file.");
+            LOG.info("Collection successfully saved to file.");
         } catch (Exception e) {
-            System.err.println("Error saving collection: " + e.getMessage());
+            LOG.error("Error saving collection: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.example.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one command name.
+public class CommandMetrics {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram(); // From dispatch until a worker picks it up
+    private final LatencyHistogram execution = new LatencyHistogram(); // Inside the command handler
+
+    public void record(long queueWaitNanos, long executionNanos, boolean success) {
+        requests.increment();
+        if (!success) {
+            failures.increment();
+        }
+        queueWait.recordNanos(queueWaitNanos);
+        execution.recordNanos(executionNanos);
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getExecution() {
+        return execution;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.server.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram that many threads can record into without locking.
+// Bucket b counts values in [2^(b-1), 2^b) microseconds (bucket 0 counts values below 1 us), each bucket being a
+// LongAdder, so concurrent writers land on different cells instead of contending on one counter.
+// Percentiles are reported as the upper bound of their bucket, i.e. at most twice the real value.
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets[bucket].increment();
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : (double) totalMicros.sum() / samples;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    public long percentileMicros(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets[i].sum();
+            samples += snapshot[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * samples);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    // e.g. "n=120 mean=85us p50<=127us p99<=511us max=430us"
+    public String summary() {
+        return String.format("n=%d mean=%.0fus p50<=%dus p99<=%dus max=%dus",
+                getCount(), getMeanMicros(), percentileMicros(50), percentileMicros(99), getMaxMicros());
+    }
+}
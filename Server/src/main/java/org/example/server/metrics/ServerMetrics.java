@@ -0,0 +1,148 @@
+package org.example.server.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Live counters of the server, read by the 'stats' command.
+// Recorded on the reactor and worker threads for every datagram, so everything is a LongAdder or a
+// LatencyHistogram: writers never lock, and only the (rare) reader pays for summing the cells.
+public class ServerMetrics {
+    private static final int MAX_COMMAND_NAMES = 64; // Names come from the clients; the rest is counted as "other"
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final ConcurrentHashMap<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+
+    private final LongAdder datagramsReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder datagramsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder stillRunning = new LongAdder(); // Commands told to retry because they ran past the timeout
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder droppedResponses = new LongAdder(); // Outgoing queue was full
+    private final LongAdder queued = new LongAdder(); // Dispatched, not yet picked up by a worker
+    private final LongAdder executing = new LongAdder();
+    private final LatencyHistogram deserialization = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+
+    public CommandMetrics command(String name) {
+        CommandMetrics command = commands.get(name);
+        if (command != null) {
+            return command;
+        }
+        return commands.computeIfAbsent(commands.size() < MAX_COMMAND_NAMES ? name : "other",
+                key -> new CommandMetrics());
+    }
+
+    public void recordReceived(int bytes) {
+        datagramsReceived.increment();
+        bytesReceived.add(bytes);
+    }
+
+    public void recordSent(int bytes) {
+        datagramsSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    public void recordStillRunning() {
+        stillRunning.increment();
+    }
+
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    public void recordQueueFull() {
+        queueFull.increment();
+    }
+
+    public void recordDroppedResponse() {
+        droppedResponses.increment();
+    }
+
+    public void recordDeserialization(long nanos) {
+        deserialization.recordNanos(nanos);
+    }
+
+    public void recordSerialization(long nanos) {
+        serialization.recordNanos(nanos);
+    }
+
+    // A command was handed to the executor
+    public void enqueued() {
+        queued.increment();
+    }
+
+    // The executor refused it
+    public void dequeued() {
+        queued.decrement();
+    }
+
+    // A worker started on it
+    public void started() {
+        queued.decrement();
+        executing.increment();
+    }
+
+    public void finished() {
+        executing.decrement();
+    }
+
+    // Sorted by command name
+    public Map<String, CommandMetrics> getCommands() {
+        return new TreeMap<>(commands);
+    }
+
+    public long getUptimeMillis() {
+        return System.currentTimeMillis() - startedAtMillis;
+    }
+
+    public long getDatagramsReceived() {
+        return datagramsReceived.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getStillRunning() {
+        return stillRunning.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getQueueFull() {
+        return queueFull.sum();
+    }
+
+    public long getDroppedResponses() {
+        return droppedResponses.sum();
+    }
+
+    public long getQueueDepth() {
+        return Math.max(0, queued.sum());
+    }
+
+    public long getExecuting() {
+        return Math.max(0, executing.sum());
+    }
+
+    public LatencyHistogram getDeserialization() {
+        return deserialization;
+    }
+
+    public LatencyHistogram getSerialization() {
+        return serialization;
+    }
+}
@@ -0,0 +1,190 @@
+package org.example.server.network;
+
+import org.example.common.command.AddCommand;
+import org.example.common.command.AddIfMaxCommand;
+import org.example.common.command.BatchCommand;
+import org.example.common.command.ClearCommand;
+import org.example.common.command.Command;
+import org.example.common.command.RemoveByIdCommand;
+import org.example.common.command.RemoveLowerCommand;
+import org.example.common.command.ShowCommand;
+import org.example.common.command.UpdateCommand;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Decides on the reactor thread, before a command is deserialized, whether it may be executed.
+// Every client gets one token bucket per command class, so a client flooding 'show' runs out of
+// heavy tokens without slowing down its own cheap commands or anybody else.
+// A rejected request is answered with "server busy, retry after N ms" instead of being queued.
+// admit only sees the DTO class; once the command is deserialized, admitContents charges what the class does not
+// tell: a show of the whole collection costs a heavy token, and every command inside a batch costs a token of its own
+// class, so a batch is no way around the write and heavy limits.
+public class AdmissionController {
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    private static final long IDLE_CLIENT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1); // At most one idle scan per interval
+    private static final long TABLE_FULL_RETRY_MILLIS = 1000; // For new clients while every slot is taken
+
+    public enum CommandClass {
+        READ(200, 400), // info, help, count_by_location, show of a page or since a token, ...
+        WRITE(100, 200), // add, update, remove_*, clear
+        HEAVY(10, 20), // show of the whole collection, charged by admitContents
+        BATCH(50, 100); // execute_script envelopes of up to BatchCommand.MAX_COMMANDS commands
+
+        private final double ratePerSecond;
+        private final double burst;
+
+        CommandClass(double ratePerSecond, double burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+    }
+
+    private static final Map<String, CommandClass> CLASS_BY_DTO = Map.of(
+            BatchCommand.class.getName(), CommandClass.BATCH,
+            AddCommand.class.getName(), CommandClass.WRITE,
+            AddIfMaxCommand.class.getName(), CommandClass.WRITE,
+            UpdateCommand.class.getName(), CommandClass.WRITE,
+            RemoveByIdCommand.class.getName(), CommandClass.WRITE,
+            RemoveLowerCommand.class.getName(), CommandClass.WRITE,
+            ClearCommand.class.getName(), CommandClass.WRITE);
+
+    private final Map<SocketAddress, ClientBuckets> clients = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    // Returns 0 if the command may run, otherwise how many milliseconds the client should wait.
+    // While the table is full even after a sweep, clients not in it are turned away instead of tracked.
+    public long admit(SocketAddress clientAddress, String commandClassName) {
+        long now = System.nanoTime();
+        sweepIfDue(now);
+        ClientBuckets buckets = clients.get(clientAddress);
+        if (buckets == null) {
+            if (clients.size() >= MAX_TRACKED_CLIENTS) {
+                return TABLE_FULL_RETRY_MILLIS;
+            }
+            buckets = clients.computeIfAbsent(clientAddress, address -> new ClientBuckets(now));
+        }
+        return buckets.get(classify(commandClassName)).tryAcquire(now, 1);
+    }
+
+    // Charges the parts of a deserialized command that admit could not see. All or nothing: if one class runs
+    // out, the tokens already taken are given back. Returns 0 or the milliseconds to wait, like admit.
+    public long admitContents(SocketAddress clientAddress, Command command) {
+        int[] charges = new int[CommandClass.values().length];
+        if (command instanceof BatchCommand) {
+            for (Command inner : ((BatchCommand) command).getCommands()) {
+                charges[classify(inner).ordinal()]++;
+            }
+        } else if (isFullShow(command)) {
+            charges[CommandClass.HEAVY.ordinal()]++;
+        }
+        ClientBuckets buckets = clients.get(clientAddress);
+        if (buckets == null) {
+            return 0; // Evicted since admit; the command was admitted there
+        }
+        long now = System.nanoTime();
+        for (CommandClass commandClass : CommandClass.values()) {
+            int charge = charges[commandClass.ordinal()];
+            if (charge == 0) {
+                continue;
+            }
+            long wait = buckets.get(commandClass).tryAcquire(now, charge);
+            if (wait > 0) {
+                for (int i = 0; i < commandClass.ordinal(); i++) {
+                    buckets.buckets[i].refund(charges[i]);
+                }
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    public static CommandClass classify(String commandClassName) {
+        return commandClassName == null ? CommandClass.READ
+                : CLASS_BY_DTO.getOrDefault(commandClassName, CommandClass.READ);
+    }
+
+    // Class of a command inside a batch, where a show of the whole collection is heavy
+    private static CommandClass classify(Command command) {
+        return isFullShow(command) ? CommandClass.HEAVY : classify(command.getClass().getName());
+    }
+
+    // 'show' and 'show since' without a token; a page or a delta since a token is a bounded read
+    private static boolean isFullShow(Command command) {
+        if (!(command instanceof ShowCommand)) {
+            return false;
+        }
+        String arg = command.getArg() == null ? "" : command.getArg().trim();
+        return arg.isEmpty() || arg.equalsIgnoreCase(ShowCommand.SINCE);
+    }
+
+    private void sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+            clients.values().removeIf(buckets -> now - buckets.lastUsed() > IDLE_CLIENT_NANOS);
+        }
+    }
+
+    private static final class ClientBuckets {
+        private final TokenBucket[] buckets = new TokenBucket[CommandClass.values().length];
+
+        private ClientBuckets(long now) {
+            for (CommandClass commandClass : CommandClass.values()) {
+                buckets[commandClass.ordinal()] = new TokenBucket(commandClass.ratePerSecond, commandClass.burst, now);
+            }
+        }
+
+        private TokenBucket get(CommandClass commandClass) {
+            return buckets[commandClass.ordinal()];
+        }
+
+        private long lastUsed() {
+            long last = 0;
+            for (TokenBucket bucket : buckets) {
+                last = Math.max(last, bucket.lastRefill());
+            }
+            return last;
+        }
+    }
+
+    // Classic token bucket: refills continuously at the rate, holds at most 'burst' tokens, one token per command.
+    // A charge above the burst is capped at it, so a large batch waits for a full bucket instead of forever.
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double burst;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(double ratePerSecond, double burst, long now) {
+            this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = now;
+        }
+
+        // Takes the tokens and returns 0, or returns the milliseconds until enough tokens are available.
+        private synchronized long tryAcquire(long now, int count) {
+            double charge = Math.min(count, burst);
+            tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= charge) {
+                tokens -= charge;
+                return 0;
+            }
+            long waitNanos = (long) Math.ceil((charge - tokens) / tokensPerNano);
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        }
+
+        private synchronized void refund(int count) {
+            tokens = Math.min(burst, tokens + Math.min(count, burst));
+        }
+
+        private synchronized long lastRefill() {
+            return lastRefill;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.server.network;
+
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// How the server runs commands.
+// FIXED_POOL: maxConcurrency platform threads, the original behaviour.
+// VIRTUAL_THREADS: one virtual thread per command (Java 21+), at most maxConcurrency of them executing at once.
+// Commands that block (saving, serializing a big show) park a cheap virtual thread instead of tying up a pool thread.
+// In both modes at most queueCapacity commands wait for their turn; beyond that execute() throws
+// RejectedExecutionException, so the reactor can shed the load instead of letting latency grow without bound.
+public enum ExecutionMode {
+    FIXED_POOL,
+    VIRTUAL_THREADS;
+
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final int DEFAULT_VIRTUAL_CONCURRENCY = 256;
+    public static final int DEFAULT_QUEUE_CAPACITY = 512;
+    private static final Logger LOG = Log.getLogger(ExecutionMode.class);
+
+    public static ExecutionMode fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return FIXED_POOL;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "fixed":
+                return FIXED_POOL;
+            case "virtual":
+                return VIRTUAL_THREADS;
+            default:
+                throw new IllegalArgumentException("Unknown execution mode: " + value + " (expected 'fixed' or 'virtual')");
+        }
+    }
+
+    // Virtual threads asked for on a JVM without them get the fixed pool's default
+    public int defaultConcurrency() {
+        return this == VIRTUAL_THREADS && virtualThreadsAvailable() ? DEFAULT_VIRTUAL_CONCURRENCY : DEFAULT_POOL_SIZE;
+    }
+
+    // Creates the executor. Falls back to a fixed pool of maxConcurrency threads if virtual threads are not
+    // available on this JVM.
+    public ExecutorService createExecutor(int maxConcurrency, int queueCapacity) {
+        if (this == VIRTUAL_THREADS) {
+            ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+            if (virtualThreads != null) {
+                return new BoundedExecutor(virtualThreads, maxConcurrency, queueCapacity);
+            }
+            LOG.warn("Virtual threads need Java 21 or newer. Falling back to a fixed pool of {} threads.",
+                    maxConcurrency);
+            return newFixedPool(maxConcurrency, queueCapacity);
+        }
+        return newFixedPool(maxConcurrency, queueCapacity);
+    }
+
+    // Like Executors.newFixedThreadPool, but with a bounded queue that rejects instead of growing.
+    private static ExecutorService newFixedPool(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Looked up reflectively so the server still compiles for and runs on older JVMs.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // Limits how many submitted tasks run at the same time. Waiting tasks block inside their own
+    // virtual thread, so execute() never blocks the reactor that submits them.
+    private static final class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final int maxAdmitted; // Running plus waiting
+        private final AtomicInteger admitted = new AtomicInteger();
+
+        private BoundedExecutor(ExecutorService delegate, int maxConcurrency, int queueCapacity) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+            this.maxAdmitted = maxConcurrency + queueCapacity;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (admitted.incrementAndGet() > maxAdmitted) {
+                admitted.decrementAndGet();
+                throw new RejectedExecutionException("Too many commands waiting.");
+            }
+            try {
+                delegate.execute(() -> run(command));
+            } catch (RejectedExecutionException e) {
+                admitted.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private void run(Runnable command) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                admitted.decrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                command.run();
+            } finally {
+                permits.release();
+                admitted.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.server.network;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Remembers the requests in progress and the serialized responses of recently executed writes, keyed by client
+// address and request id. A retransmitted command is dropped while the original runs and a retransmitted write is
+// answered from here afterwards instead of being executed again, which makes retries of non-idempotent commands
+// (add, add_if_max, ...) safe and saves worker time under packet loss.
+// The cache is bounded in entries and in the bytes of the responses it holds; entries expire after a TTL,
+// and the oldest go first when either bound is exceeded.
+public class IdempotencyCache {
+    private static final long ENTRY_TTL_MILLIS = 60_000;
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long MAX_BYTES = 8L * 1024 * 1024;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(); // Insertion order == age order
+    private long bytes; // Of the datagrams of all complete entries
+
+    // Registers the first copy of a request and returns null; for a duplicate returns the existing entry,
+    // which is either complete (replay it) or still in progress (drop the duplicate).
+    public synchronized Entry begin(SocketAddress clientAddress, long requestId) {
+        long now = System.currentTimeMillis();
+        evict(now);
+        Key key = new Key(clientAddress, requestId);
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        entries.put(key, new Entry(now));
+        return null;
+    }
+
+    // Stores the datagrams that answer the request. Without datagrams (a read that is not kept, or the response
+    // could not be serialized) or if they alone exceed the byte budget, the entry is dropped, so that a retry is
+    // executed instead of waiting for nothing.
+    public synchronized void complete(SocketAddress clientAddress, long requestId, List<ByteBuffer> datagrams) {
+        Key key = new Key(clientAddress, requestId);
+        long size = datagrams == null ? 0 : sizeOf(datagrams);
+        if (datagrams == null || size > MAX_BYTES) {
+            entries.remove(key);
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.datagrams = datagrams;
+            entry.size = size;
+            bytes += size;
+            evict(System.currentTimeMillis());
+        }
+    }
+
+    private void evict(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry oldest = iterator.next();
+            if (entries.size() <= MAX_ENTRIES && bytes <= MAX_BYTES && now - oldest.createdAt <= ENTRY_TTL_MILLIS) {
+                break;
+            }
+            bytes -= oldest.size;
+            iterator.remove();
+        }
+    }
+
+    private static long sizeOf(List<ByteBuffer> datagrams) {
+        long size = 0;
+        for (ByteBuffer datagram : datagrams) {
+            size += datagram.remaining();
+        }
+        return size;
+    }
+
+    public static final class Entry {
+        private final long createdAt;
+        private volatile List<ByteBuffer> datagrams;
+        private long size; // Guarded by the cache
+
+        private Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public boolean isComplete() {
+            return datagrams != null;
+        }
+
+        public List<ByteBuffer> getDatagrams() {
+            return datagrams;
+        }
+    }
+
+    private static final class Key {
+        private final SocketAddress clientAddress;
+        private final long requestId;
+
+        private Key(SocketAddress clientAddress, long requestId) {
+            this.clientAddress = clientAddress;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return requestId == key.requestId && clientAddress.equals(key.clientAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(clientAddress, requestId);
+        }
+    }
+}
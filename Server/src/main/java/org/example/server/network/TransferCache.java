@@ -0,0 +1,87 @@
+package org.example.server.network;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the chunks of recently sent multi-chunk responses so that lost chunks can be
+// resent on a client NACK. Entries expire after a TTL and the total size is capped.
+public class TransferCache {
+    private static final long TRANSFER_TTL_MILLIS = 30_000;
+    private static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+    private final Map<Long, Transfer> transfers = new ConcurrentHashMap<>();
+    private final Queue<Transfer> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final AtomicLong nextTransferId = new AtomicLong(System.nanoTime());
+
+    public long nextTransferId() {
+        return nextTransferId.incrementAndGet();
+    }
+
+    public void put(long transferId, SocketAddress clientAddress, List<ByteBuffer> chunks) {
+        long size = 0;
+        for (ByteBuffer chunk : chunks) {
+            size += chunk.remaining();
+        }
+        Transfer transfer = new Transfer(transferId, clientAddress, chunks, size, System.currentTimeMillis());
+        transfers.put(transferId, transfer);
+        insertionOrder.add(transfer);
+        cachedBytes.addAndGet(size);
+        evict();
+    }
+
+    // Returns sendable copies of the requested chunks, or an empty list if the transfer is unknown,
+    // expired or was sent to another address (so NACKs cannot be used to reflect traffic elsewhere).
+    public List<ByteBuffer> get(long transferId, SocketAddress requester, int[] indices) {
+        Transfer transfer = transfers.get(transferId);
+        List<ByteBuffer> result = new ArrayList<>();
+        if (transfer == null || !transfer.clientAddress.equals(requester) || isExpired(transfer, System.currentTimeMillis())) {
+            return result;
+        }
+        for (int index : indices) {
+            if (index >= 0 && index < transfer.chunks.size()) {
+                result.add(transfer.chunks.get(index).duplicate());
+            }
+        }
+        return result;
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Transfer oldest;
+        while ((oldest = insertionOrder.peek()) != null
+                && (isExpired(oldest, now) || cachedBytes.get() > MAX_CACHED_BYTES)) {
+            if (insertionOrder.remove(oldest)) {
+                transfers.remove(oldest.transferId);
+                cachedBytes.addAndGet(-oldest.size);
+            }
+        }
+    }
+
+    private static boolean isExpired(Transfer transfer, long now) {
+        return now - transfer.createdAt > TRANSFER_TTL_MILLIS;
+    }
+
+    private static final class Transfer {
+        private final long transferId;
+        private final SocketAddress clientAddress;
+        private final List<ByteBuffer> chunks;
+        private final long size;
+        private final long createdAt;
+
+        private Transfer(long transferId, SocketAddress clientAddress, List<ByteBuffer> chunks, long size, long createdAt) {
+            this.transferId = transferId;
+            this.clientAddress = clientAddress;
+            this.chunks = chunks;
+            this.size = size;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package org.example.server.network;
+
+import org.example.common.codec.BinaryCodec;
+import org.example.common.codec.WireFormat;
+import org.example.common.command.Command;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.common.network.BufferPool;
+import org.example.common.network.ChunkProtocol;
+import org.example.common.response.Response;
+import org.example.common.util.ByteBufferOutputStream;
+import org.example.common.util.CompressionUtil;
+import org.example.common.util.SerializationUtil;
+import org.example.server.manager.ServerCommandManager;
+import org.example.server.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One selector thread serving one DatagramChannel.
+// In multi-reactor mode several reactors are bound to the same port (SO_REUSEPORT)
+// and the kernel spreads the clients between them; all of them share the worker pool and the command manager.
+public class UDPReactor implements Runnable {
+    private static final Logger LOG = Log.getLogger(UDPReactor.class);
+    private static final long RESPONSE_TIMEOUT_MILLIS = 5000;
+    private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024; // Upper bound for data waiting for the socket
+    private static final int MAX_RECEIVES_PER_WAKEUP = 256; // Keeps writes from starving while a burst is drained
+    // Receive buffers handed to workers and not yet deserialized; as many as the default worker queue holds
+    private static final int MAX_RECEIVE_BUFFERS_IN_FLIGHT = ExecutionMode.DEFAULT_QUEUE_CAPACITY;
+    private static final long QUEUE_FULL_RETRY_MILLIS = 100; // Suggested back-off when the worker queue is full
+    private static final long STILL_RUNNING_RETRY_MILLIS = 1000; // Suggested back-off when a command runs long
+    // A Java-serialized command may only consist of the classes commands are made of; anything else is rejected
+    // before it is instantiated
+    private static final ObjectInputFilter COMMAND_FILTER = ObjectInputFilter.Config.createFilter(
+            "org.example.**;java.util.*;java.time.*;java.lang.Object;java.lang.Enum;java.lang.Number;java.lang.Integer;"
+                    + "java.lang.Long;java.lang.Double;java.lang.Float;java.lang.Boolean;"
+                    + "maxdepth=20;maxrefs=10000;maxarray=100000;maxbytes=1048576;!*");
+
+    private final int id;
+    private final DatagramChannel channel;
+    private final ServerCommandManager commandManager;
+    private final ExecutorService commandExecutorPool;
+    private final TransferCache transferCache;
+    private final IdempotencyCache idempotencyCache;
+    private final AdmissionController admissionController;
+    private final ServerMetrics metrics;
+    private final boolean javaSerializationAllowed;
+    private final Selector selector;
+    private final SelectionKey channelKey;
+    private final BufferPool bufferPool = BufferPool.datagramPool();
+    private ByteBuffer buffer; // Pooled receive buffer; handed over to a worker once it holds a command
+    private final AtomicInteger receiveBuffersInFlight = new AtomicInteger();
+
+    // Response chunks produced by the workers, waiting for the channel to become writable
+    private final Queue<PendingResponse> pendingResponses = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong(); // Memory held by the queue, see enqueue
+
+    private volatile boolean running;
+
+    UDPReactor(int id, DatagramChannel channel, ServerCommandManager commandManager,
+               ExecutorService commandExecutorPool, TransferCache transferCache,
+               IdempotencyCache idempotencyCache, AdmissionController admissionController,
+               ServerMetrics metrics, boolean javaSerializationAllowed) throws IOException {
+        this.id = id;
+        this.channel = channel;
+        this.commandManager = commandManager;
+        this.commandExecutorPool = commandExecutorPool;
+        this.transferCache = transferCache;
+        this.idempotencyCache = idempotencyCache;
+        this.admissionController = admissionController;
+        this.metrics = metrics;
+        this.javaSerializationAllowed = javaSerializationAllowed;
+        this.buffer = bufferPool.acquire();
+        this.selector = Selector.open();
+        this.channel.configureBlocking(false);
+        this.channelKey = channel.register(selector, SelectionKey.OP_READ);
+        this.running = true;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                if (!running) {
+                    LOG.info("Reactor {} running flag set to false. Exiting loop.", id);
+                    break;
+                }
+
+                Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isReadable()) {
+                        handleRead(key);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        handleWrite(key);
+                    }
+                }
+
+                // Workers wake the selector up after queueing a response, so ask for write readiness here
+                if (channelKey.isValid() && !pendingResponses.isEmpty()) {
+                    channelKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (java.nio.channels.ClosedByInterruptException e) {
+                LOG.info("Reactor {} was interrupted. Shutting down gracefully.", id);
+                break; // Exit the loop gracefully
+            } catch (java.nio.channels.ClosedSelectorException e) {
+                if (!running) {
+                    LOG.info("Reactor {} selector closed during shutdown process.", id);
+                    break;
+                }
+                LOG.error("Unexpected ClosedSelectorException during server operation: {}", e.getMessage(), e);
+                break;
+            } catch (IOException e) {
+                if (!running) {
+                    LOG.info("IO Exception during server shutdown: {}", e.getMessage());
+                    break;
+                }
+                LOG.error("Server IOException during operation: {}", e.getMessage(), e);
+                break;
+            } catch (Exception e) {
+                LOG.error("Server unexpected error in main loop: {}", e.getMessage(), e);
+                break;
+            }
+        }
+        LOG.info("Reactor {} loop stopped.", id);
+    }
+
+    // Drains every datagram queued on the socket (up to a fairness cap) and hands each one
+    // to the worker pool without waiting for the result; the response is queued by the worker.
+    // The pooled buffer itself goes to the worker, so the datagram is never copied. Each one holds 64 KB until
+    // it is deserialized, so at most MAX_RECEIVE_BUFFERS_IN_FLIGHT are handed out per reactor.
+    // Requests over the client's rate or beyond the worker queue are answered "busy" right here,
+    // before anything is deserialized.
+    private void handleRead(SelectionKey key) throws IOException {
+        DatagramChannel currentChannel = (DatagramChannel) key.channel();
+        for (int received = 0; received < MAX_RECEIVES_PER_WAKEUP; received++) {
+            buffer.clear();
+            SocketAddress clientAddress = currentChannel.receive(buffer);
+
+            if (clientAddress == null) {
+                return; // Socket receive queue is empty
+            }
+
+            buffer.flip();
+            metrics.recordReceived(buffer.remaining());
+            if (ChunkProtocol.isFrame(buffer) && ChunkProtocol.frameType(buffer) == ChunkProtocol.TYPE_NACK) {
+                handleNack(clientAddress);
+                continue;
+            }
+
+            LOG.debug("Received {} bytes from {}", buffer.remaining(), clientAddress);
+            long requestId = 0; // Unframed datagrams come from clients that predate the request header
+            if (ChunkProtocol.isFrame(buffer)) {
+                try {
+                    requestId = ChunkProtocol.readRequestHeader(buffer);
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring unexpected frame from {}: {}", clientAddress, e.getMessage());
+                    continue;
+                }
+            }
+            if (!javaSerializationAllowed && !BinaryCodec.isBinary(buffer)) {
+                refuseJavaSerialization(clientAddress, requestId);
+                continue;
+            }
+            long retryAfter = admissionController.admit(clientAddress, SerializationUtil.peekClassName(buffer));
+            if (retryAfter > 0) {
+                metrics.recordRateLimited();
+                rejectBusy(clientAddress, requestId, retryAfter);
+                continue;
+            }
+
+            if (receiveBuffersInFlight.incrementAndGet() > MAX_RECEIVE_BUFFERS_IN_FLIGHT) {
+                receiveBuffersInFlight.decrementAndGet();
+                metrics.recordQueueFull();
+                rejectBusy(clientAddress, requestId, QUEUE_FULL_RETRY_MILLIS);
+                continue;
+            }
+            ByteBuffer datagram = buffer;
+            buffer = bufferPool.acquire();
+            if (!dispatch(datagram, clientAddress)) {
+                metrics.recordQueueFull();
+                rejectBusy(clientAddress, requestId, QUEUE_FULL_RETRY_MILLIS);
+            }
+        }
+    }
+
+    // Cheap answer for a request that is not going to be executed; the client retries after the delay.
+    private void rejectBusy(SocketAddress clientAddress, long requestId, long retryAfterMillis) {
+        LOG.debug("Server busy, asking {} to retry after {} ms", clientAddress, retryAfterMillis);
+        Response busy = new Response("Server busy, retry after " + retryAfterMillis + " ms.", false);
+        busy.setRequestId(requestId);
+        busy.setRetryAfterMillis(retryAfterMillis);
+        queueResponse(busy, clientAddress, false);
+    }
+
+    private void refuseJavaSerialization(SocketAddress clientAddress, long requestId) {
+        LOG.debug("Refusing a Java-serialized command from {}", clientAddress);
+        Response refusal = new Response("This server only accepts commands in the binary wire format.", false);
+        refusal.setRequestId(requestId);
+        queueResponse(refusal, clientAddress, false);
+    }
+
+    // Resends only the chunks the client reported missing. Cheap enough to stay on the selector thread.
+    private void handleNack(SocketAddress clientAddress) {
+        try {
+            ChunkProtocol.Nack nack = ChunkProtocol.readNack(buffer);
+            List<ByteBuffer> chunks = transferCache.get(nack.getTransferId(), clientAddress, nack.getIndices());
+            LOG.debug("Resending {} chunks of transfer {} to {}", chunks.size(), nack.getTransferId(), clientAddress);
+            for (ByteBuffer chunk : chunks) {
+                enqueue(chunk, clientAddress, false);
+            }
+            if (!chunks.isEmpty()) {
+                channelKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring malformed NACK from {}: {}", clientAddress, e.getMessage());
+        }
+    }
+
+    // Returns false if the worker queue is full (or the pool is shutting down) and the command was dropped.
+    private boolean dispatch(ByteBuffer datagram, SocketAddress clientAddress) {
+        long dispatchedAt = System.nanoTime();
+        metrics.enqueued();
+        try {
+            commandExecutorPool.execute(() -> {
+                metrics.started();
+                try {
+                    processCommand(datagram, clientAddress, dispatchedAt);
+                } finally {
+                    metrics.finished();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            metrics.dequeued();
+            releaseReceiveBuffer(datagram);
+            LOG.debug("Worker pool rejected command from {}: {}", clientAddress, e.getMessage());
+            return false;
+        }
+    }
+
+    // Runs on a worker thread. Retransmitted requests (same client address and request id) are dropped while the
+    // original is still executing. Commands that change the collection are then answered from the idempotency
+    // cache and never executed twice; reads are forgotten once their response is queued, so a later retry runs
+    // again instead of filling the cache with large show responses.
+    private void processCommand(ByteBuffer datagram, SocketAddress clientAddress, long dispatchedAt) {
+        long startedAt = System.nanoTime();
+        Command commandDto;
+        try {
+            commandDto = (Command) SerializationUtil.deserialize(datagram, COMMAND_FILTER);
+            metrics.recordDeserialization(System.nanoTime() - startedAt);
+        } catch (Exception e) {
+            LOG.warn("Error processing command from {}: {}", clientAddress, e.getMessage(), e);
+            queueResponse(new Response("Server error: " + e.getMessage(), false), clientAddress, false);
+            return;
+        } finally {
+            releaseReceiveBuffer(datagram);
+        }
+
+        long requestId = commandDto.getRequestId();
+        // Commands without an id cannot be matched to their retries
+        boolean tracked = requestId != 0;
+        boolean cacheable = tracked && commandManager.isWriteCommand(commandDto);
+        if (tracked) {
+            IdempotencyCache.Entry previous = idempotencyCache.begin(clientAddress, requestId);
+            if (previous != null) {
+                replay(previous, clientAddress, requestId);
+                return;
+            }
+        }
+        long retryAfter = admissionController.admitContents(clientAddress, commandDto);
+        if (retryAfter > 0) {
+            if (tracked) {
+                idempotencyCache.complete(clientAddress, requestId, null); // So that the retry is executed
+            }
+            metrics.recordRateLimited();
+            rejectBusy(clientAddress, requestId, retryAfter);
+            return;
+        }
+
+        // If the command is slow the client is asked to retry later, which is not a final answer: it keeps
+        // retransmitting, the duplicates are dropped while the command runs, and the real response (sent as soon
+        // as it is ready, and cached) completes the request
+        Response timeoutResponse = new Response("Command still running, retry after " + STILL_RUNNING_RETRY_MILLIS
+                + " ms.", false);
+        timeoutResponse.setRequestId(requestId);
+        timeoutResponse.setRetryAfterMillis(STILL_RUNNING_RETRY_MILLIS);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        result.completeOnTimeout(timeoutResponse, RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .thenAccept(response -> {
+                    if (response == timeoutResponse) {
+                        LOG.warn("Command from {} still running after {} ms", clientAddress, RESPONSE_TIMEOUT_MILLIS);
+                        metrics.recordStillRunning();
+                        queueResponse(timeoutResponse, clientAddress, false);
+                    }
+                });
+
+        long executionStart = System.nanoTime();
+        Response response = executeCommand(commandDto, clientAddress);
+        metrics.command(commandDto.getName()).record(startedAt - dispatchedAt, System.nanoTime() - executionStart,
+                response.isSuccess());
+        response.setRequestId(requestId);
+        result.complete(response);
+
+        List<ByteBuffer> datagrams = queueResponse(response, clientAddress, cacheable, commandDto.getAcceptedEncodings());
+        if (tracked) {
+            idempotencyCache.complete(clientAddress, requestId, cacheable ? datagrams : null);
+        }
+    }
+
+    private void releaseReceiveBuffer(ByteBuffer datagram) {
+        bufferPool.release(datagram);
+        receiveBuffersInFlight.decrementAndGet();
+    }
+
+    private Response executeCommand(Command commandDto, SocketAddress clientAddress) {
+        try {
+            LOG.debug("Executing command: {}", commandDto.getName());
+            return commandManager.executeCommand(commandDto);
+        } catch (Exception e) {
+            LOG.error("Error processing command from {}: {}", clientAddress, e.getMessage(), e);
+            return new Response("Server error: " + e.getMessage(), false);
+        }
+    }
+
+    private void replay(IdempotencyCache.Entry previous, SocketAddress clientAddress, long requestId) {
+        if (!previous.isComplete()) {
+            // The original is still executing; its response will answer this copy as well
+            LOG.debug("Dropping duplicate of in-progress request {} from {}", requestId, clientAddress);
+            return;
+        }
+        LOG.debug("Replaying cached response for request {} to {}", requestId, clientAddress);
+        for (ByteBuffer cached : previous.getDatagrams()) {
+            enqueue(cached.duplicate(), clientAddress, false);
+        }
+        selector.wakeup();
+    }
+
+    // Called from worker threads: serializes the response off the selector thread, splits it
+    // into chunks and queues them for sending. Multi-chunk responses are kept for NACK resends.
+    // The usual single-chunk response is serialized straight into a pooled buffer behind the chunk header.
+    // Payloads above the compression threshold are deflated if the client accepts it.
+    // Returns heap copies of the datagrams when they have to be cached, null otherwise or on failure.
+    private List<ByteBuffer> queueResponse(Response response, SocketAddress clientAddress, boolean keepCopy) {
+        return queueResponse(response, clientAddress, keepCopy, 0);
+    }
+
+    private List<ByteBuffer> queueResponse(Response response, SocketAddress clientAddress, boolean keepCopy,
+                                           int acceptedEncodings) {
+        if (!running) {
+            return null;
+        }
+        boolean overloaded = pendingBytes.get() >= MAX_PENDING_BYTES;
+        if (overloaded) {
+            // The socket cannot keep up; the client will retry, so dropping is cheaper than growing without bound
+            LOG.warn("Outgoing queue is full, dropping response to {}", clientAddress);
+            metrics.recordDroppedResponse();
+            if (!keepCopy) {
+                return null;
+            }
+        }
+        long serializationStart = System.nanoTime();
+        ByteBuffer datagram = bufferPool.acquire();
+        try {
+            long transferId = transferCache.nextTransferId();
+            datagram.position(ChunkProtocol.CHUNK_HEADER_SIZE);
+            datagram.limit(ChunkProtocol.CHUNK_HEADER_SIZE + ChunkProtocol.MAX_CHUNK_PAYLOAD);
+            ByteBufferOutputStream out = new ByteBufferOutputStream(datagram);
+            SerializationUtil.serialize(response, out, (acceptedEncodings & BinaryCodec.ENCODING_BINARY) != 0
+                    ? WireFormat.BINARY : WireFormat.JAVA);
+
+            byte flags = 0;
+            byte[] payload = out.hasSpilled() ? out.toByteArray() : null; // null: the payload is in the datagram
+            int payloadSize = out.size();
+            if (payloadSize > CompressionUtil.COMPRESSION_THRESHOLD
+                    && (acceptedEncodings & CompressionUtil.ENCODING_DEFLATE) != 0) {
+                byte[] compressed = CompressionUtil.deflate(payload != null ? payload : out.toByteArray());
+                if (compressed.length < payloadSize) {
+                    flags = ChunkProtocol.FLAG_DEFLATE;
+                    payload = compressed;
+                    payloadSize = compressed.length;
+                }
+            }
+            if (payload != null && payloadSize <= ChunkProtocol.MAX_CHUNK_PAYLOAD) {
+                // Compressed down to a single chunk: reuse the pooled datagram
+                datagram.limit(datagram.capacity()).position(ChunkProtocol.CHUNK_HEADER_SIZE);
+                datagram.put(payload);
+                payload = null;
+            }
+
+            metrics.recordSerialization(System.nanoTime() - serializationStart);
+
+            List<ByteBuffer> copies = null;
+            if (payload == null) {
+                ChunkProtocol.writeChunkHeader(datagram, transferId, response.getRequestId(), flags, 0, 1, payloadSize);
+                datagram.flip();
+                if (keepCopy) {
+                    copies = List.of(ByteBuffer.allocate(datagram.remaining()).put(datagram.duplicate()).flip());
+                }
+                if (overloaded) {
+                    bufferPool.release(datagram);
+                } else {
+                    enqueue(datagram, clientAddress, true);
+                }
+            } else {
+                bufferPool.release(datagram);
+                List<ByteBuffer> chunks = ChunkProtocol.split(transferId, response.getRequestId(), flags, payload);
+                transferCache.put(transferId, clientAddress, chunks);
+                if (!overloaded) {
+                    for (ByteBuffer chunk : chunks) {
+                        enqueue(chunk.duplicate(), clientAddress, false);
+                    }
+                }
+                copies = keepCopy ? chunks : null;
+            }
+            if (!overloaded) {
+                selector.wakeup();
+            }
+            return copies;
+        } catch (IOException e) {
+            bufferPool.release(datagram);
+            LOG.error("Error serializing response to {}: {}", clientAddress, e.getMessage());
+            return null;
+        }
+    }
+
+    // A pooled datagram is counted with its whole capacity: a response of a few hundred bytes still keeps a 64 KB
+    // buffer until it is sent.
+    private void enqueue(ByteBuffer datagram, SocketAddress clientAddress, boolean pooled) {
+        PendingResponse pending = new PendingResponse(datagram, clientAddress, pooled);
+        pendingResponses.add(pending);
+        pendingBytes.addAndGet(pending.size);
+    }
+
+    // Sends queued responses while the socket accepts them. A datagram that does not fit into
+    // the send buffer stays at the head of the queue and OP_WRITE stays on until it goes out.
+    private void handleWrite(SelectionKey key) throws IOException {
+        DatagramChannel currentChannel = (DatagramChannel) key.channel();
+        PendingResponse pending;
+        while ((pending = pendingResponses.peek()) != null) {
+            if (!sendResponse(pending, currentChannel)) {
+                return; // Send buffer is full, wait for the next OP_WRITE
+            }
+            pendingResponses.poll();
+            pendingBytes.addAndGet(-pending.size);
+            if (pending.pooled) {
+                bufferPool.release(pending.data);
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private boolean sendResponse(PendingResponse pending, DatagramChannel channelToSend) {
+        try {
+            int bytesSent = channelToSend.send(pending.data, pending.clientAddress);
+            if (bytesSent == 0) {
+                return false;
+            }
+            metrics.recordSent(bytesSent);
+            LOG.debug("Sent {} bytes to {}", bytesSent, pending.clientAddress);
+        } catch (IOException e) {
+            // A single unreachable client must not block the rest of the queue
+            LOG.warn("Error sending response to {}: {}", pending.clientAddress, e.getMessage());
+        }
+        return true;
+    }
+
+    void stop() throws IOException {
+        running = false;
+        selector.wakeup();
+        selector.close();
+        channel.close();
+    }
+
+    // One datagram of a serialized response together with the address it has to be delivered to
+    private static final class PendingResponse {
+        private final ByteBuffer data;
+        private final SocketAddress clientAddress;
+        private final boolean pooled; // Returned to the buffer pool once sent
+        private final int size; // Counted in pendingBytes
+
+        private PendingResponse(ByteBuffer data, SocketAddress clientAddress, boolean pooled) {
+            this.data = data;
+            this.clientAddress = clientAddress;
+            this.pooled = pooled;
+            this.size = pooled ? data.capacity() : data.remaining();
+        }
+    }
+}
@@ -1,186 +1,149 @@
 package org.example.server.network;
 
-import org.example.common.command.Command;
-import org.example.common.response.Response;
-import org.example.common.util.SerializationUtil;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
 import org.example.server.manager.ServerCommandManager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.SocketAddress;
-import java.nio.ByteBuffer;
+import java.net.StandardSocketOptions;
 import java.nio.channels.DatagramChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+// Owns the worker pool and one or more reactors bound to the same UDP port.
+// With reactorCount > 1 every reactor opens its own channel with SO_REUSEPORT,
+// so the kernel balances clients between selector threads.
+// Commands run on a fixed thread pool or on virtual threads, see ExecutionMode.
 public class UDPServer {
-    private static final int BUFFER_SIZE = 65565;
-    private static final long RESPONSE_TIMEOUT_MILLIS = 5000;
-
+    private static final Logger LOG = Log.getLogger(UDPServer.class);
     private final int port;
+    private final int reactorCount;
     private final ServerCommandManager commandManager;
-    private DatagramChannel channel;
-    private Selector selector;
-    private ByteBuffer buffer;
+    private final List<UDPReactor> reactors = new ArrayList<>();
+    private final TransferCache transferCache = new TransferCache();
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache();
+    private final AdmissionController admissionController = new AdmissionController();
     private ExecutorService commandExecutorPool;
 
     private volatile boolean running; // This Flag  control the server's main loop
+    private volatile boolean javaSerializationAllowed; // Otherwise only binary-encoded commands are decoded
 
     public UDPServer(int port, ServerCommandManager commandManager) {
-        this.port = port;
-        this.commandManager = commandManager;
-        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
-        this.commandExecutorPool = Executors.newFixedThreadPool(10);
-        this.running = true;
+        this(port, commandManager, 1);
     }
 
-    public void start() throws IOException {
-        channel = DatagramChannel.open();
-        channel.configureBlocking(false);
-        channel.bind(new InetSocketAddress(port));
-        selector = Selector.open();
-        channel.register(selector, SelectionKey.OP_READ);
-
-        System.out.println("Server started on UDP port " + port);
-
-        while (running) {
-            try {
-                selector.select();
-                if (!running) {
-                    System.out.println("Server running flag set to false. Exiting main loop.");
-                    break;
-                }
-
-                Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-
-                while (keyIterator.hasNext()) {
-                    SelectionKey key = keyIterator.next();
-                    keyIterator.remove();
+    public UDPServer(int port, ServerCommandManager commandManager, int reactorCount) {
+        this(port, commandManager, reactorCount, ExecutionMode.FIXED_POOL, ExecutionMode.DEFAULT_POOL_SIZE);
+    }
 
-                    if (!key.isValid()) {
-                        continue;
-                    }
+    public UDPServer(int port, ServerCommandManager commandManager, int reactorCount,
+                     ExecutionMode executionMode, int maxConcurrency) {
+        this(port, commandManager, reactorCount, executionMode, maxConcurrency, ExecutionMode.DEFAULT_QUEUE_CAPACITY);
+    }
 
-                    if (key.isReadable()) {
-                        handleRead(key);
-                    }
-                }
-            } catch (java.nio.channels.ClosedByInterruptException e) {
-                System.out.println("Server selector was interrupted. Shutting down gracefully.");
-                break; // Exit the loop gracefully
-            } catch (java.nio.channels.ClosedSelectorException e) {
-                if (!running) {
-                    System.out.println("Selector closed during shutdown process.");
-                    break;
-                }
-                System.err.println("Unexpected ClosedSelectorException during server operation: " + e.getMessage());
-                e.printStackTrace();
-                break;
-            } catch (IOException e) {
-                if (!running) {
-                    System.out.println("IO Exception during server shutdown: " + e.getMessage());
-                    break;
-                }
-                System.err.println("Server IOException during operation: " + e.getMessage());
-                e.printStackTrace();
-                break;
-            } catch (Exception e) {
-                System.err.println("Server unexpected error in main loop: " + e.getMessage());
-                e.printStackTrace();
-                break;
-            }
+    public UDPServer(int port, ServerCommandManager commandManager, int reactorCount,
+                     ExecutionMode executionMode, int maxConcurrency, int queueCapacity) {
+        if (reactorCount < 1) {
+            throw new IllegalArgumentException("Reactor count must be at least 1.");
+        }
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("At least one command must be allowed to run.");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1.");
         }
-        System.out.println("Server main loop stopped.");
+        this.port = port;
+        this.reactorCount = reactorCount;
+        this.commandManager = commandManager;
+        this.commandExecutorPool = executionMode.createExecutor(maxConcurrency, queueCapacity);
+        this.running = true;
     }
 
-    private void handleRead(SelectionKey key) throws IOException {
-        DatagramChannel currentChannel = (DatagramChannel) key.channel();
-        buffer.clear();
-        SocketAddress clientAddress = currentChannel.receive(buffer);
+    // Off by default: ObjectInputStream is kept away from untrusted datagrams and old clients are refused.
+    // When allowed, Java-serialized commands are still checked against the reactor's class filter.
+    public void setJavaSerializationAllowed(boolean javaSerializationAllowed) {
+        this.javaSerializationAllowed = javaSerializationAllowed;
+    }
 
-        if (clientAddress == null) {
-            return;
+    // Opens the channels, runs every reactor on its own thread and blocks until all of them stop.
+    public void start() throws IOException {
+        int count = reactorCount;
+        if (count > 1 && !supportsReusePort()) {
+            LOG.warn("SO_REUSEPORT is not supported on this platform. Falling back to a single reactor.");
+            count = 1;
         }
 
-        buffer.flip();
-        byte[] receivedBytes = new byte[buffer.remaining()];
-        buffer.get(receivedBytes);
+        List<Thread> reactorThreads = new ArrayList<>();
+        synchronized (reactors) {
+            if (!running) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                UDPReactor reactor = new UDPReactor(i, openChannel(count > 1), commandManager, commandExecutorPool, transferCache, idempotencyCache, admissionController, commandManager.getMetrics(), javaSerializationAllowed);
+                reactors.add(reactor);
+                reactorThreads.add(new Thread(reactor, "udp-reactor-" + i));
+            }
+        }
+        reactorThreads.forEach(Thread::start);
 
-        System.out.println("Received " + receivedBytes.length + " bytes from " + clientAddress);
+        LOG.info("Server started on UDP port {} with {} reactor(s)", port, count);
 
-        Future<Response> futureResponse = commandExecutorPool.submit(() -> {
+        for (Thread reactorThread : reactorThreads) {
             try {
-                Command commandDto = (Command) SerializationUtil.deserialize(receivedBytes);
-                System.out.println("Executing command: " + commandDto.getName());
-                return commandManager.executeCommand(commandDto);
-            } catch (Exception e) {
-                System.err.println("Error processing command from " + clientAddress + ": " + e.getMessage());
-                e.printStackTrace();
-                return new Response("Server error: " + e.getMessage(), false);
+                reactorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.info("Server main thread was interrupted. Shutting down gracefully.");
+                break;
             }
-        });
-
-        try {
-            Response response = futureResponse.get(RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-            sendResponse(response, clientAddress, currentChannel);
-        } catch (java.util.concurrent.TimeoutException e) {
-            System.err.println("Command processing timed out for " + clientAddress);
-            sendResponse(new Response("Server response timeout.", false), clientAddress, currentChannel);
-        } catch (Exception e) {
-            System.err.println("Error getting command execution result or sending response to " + clientAddress + ": " + e.getMessage());
-            e.printStackTrace();
-            sendResponse(new Response("Server internal error.", false), clientAddress, currentChannel);
         }
+        LOG.info("Server main loop stopped.");
     }
 
-    private void sendResponse(Response response, SocketAddress clientAddress, DatagramChannel channelToSend) throws IOException {
-        try {
-            byte[] responseBytes = SerializationUtil.serialize(response);
-            ByteBuffer responseBuffer = ByteBuffer.wrap(responseBytes);
+    private DatagramChannel openChannel(boolean reusePort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        if (reusePort) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        channel.bind(new InetSocketAddress(port));
+        return channel;
+    }
 
-            int bytesSent = channelToSend.send(responseBuffer, clientAddress);
-            System.out.println("Sent " + bytesSent + " bytes to " + clientAddress);
+    private static boolean supportsReusePort() {
+        try (DatagramChannel probe = DatagramChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
         } catch (IOException e) {
-            System.err.println("Error sending response to " + clientAddress + ": " + e.getMessage());
-            throw e;
+            return false;
         }
     }
 
     public void stop() {
         this.running = false;
-        System.out.println("Server shutting down...");
+        LOG.info("Server shutting down...");
 
         try {
-            if (selector != null) {
-                selector.wakeup();
-                selector.close();
-                System.out.println("Selector closed.");
-            }
-            if (channel != null) {
-                channel.close(); // Close the channel
-                System.out.println("Channel closed.");
+            synchronized (reactors) {
+                for (UDPReactor reactor : reactors) {
+                    reactor.stop();
+                }
+                LOG.info("Reactors closed.");
             }
             if (commandExecutorPool != null) {
                 commandExecutorPool.shutdown();
-                System.out.println("Awaiting termination of command executor pool...");
+                LOG.info("Awaiting termination of command executor pool...");
                 if (!commandExecutorPool.awaitTermination(5, TimeUnit.SECONDS)) {
-                    System.err.println("Command executor pool did not terminate gracefully. Forcibly shutting down.");
+                    LOG.warn("Command executor pool did not terminate gracefully. Forcibly shutting down.");
                     commandExecutorPool.shutdownNow(); // Force shutdown if it doesn't terminate in time
                 } else {
-                    System.out.println("Command executor pool terminated.");
+                    LOG.info("Command executor pool terminated.");
                 }
             }
         } catch (IOException | InterruptedException e) {
-            System.err.println("Error during server shutdown: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error during server shutdown: {}", e.getMessage(), e);
         }
-        System.out.println("Server stopped.");
+        LOG.info("Server stopped.");
     }
-}
\ No newline at end of file
+}
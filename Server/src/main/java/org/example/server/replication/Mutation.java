@@ -0,0 +1,80 @@
+package org.example.server.replication;
+
+import org.example.common.data.Person;
+import org.example.server.manager.CollectionManager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// One entry of the stream a primary sends to its replicas. The stream starts with a RESET carrying the whole
+// collection, followed by the changes in the order the primary applied them.
+// Changes are shipped as their result (the person that was stored or removed), not as the command, so replicas
+// end up with the same ids and creation dates as the primary.
+public class Mutation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        RESET,
+        PUT,
+        REMOVE,
+        CLEAR,
+        HEARTBEAT // Sent while idle so that a replica can tell a quiet primary from a dead one
+    }
+
+    private final Type type;
+    private final Person person;
+    private final ArrayList<Person> persons;
+
+    private Mutation(Type type, Person person, List<Person> persons) {
+        this.type = type;
+        this.person = person;
+        this.persons = persons == null ? null : new ArrayList<>(persons);
+    }
+
+    public static Mutation reset(List<Person> persons) {
+        return new Mutation(Type.RESET, null, persons);
+    }
+
+    public static Mutation put(Person person) {
+        return new Mutation(Type.PUT, person, null);
+    }
+
+    public static Mutation remove(Person person) {
+        return new Mutation(Type.REMOVE, person, null);
+    }
+
+    public static Mutation clear() {
+        return new Mutation(Type.CLEAR, null, null);
+    }
+
+    public static Mutation heartbeat() {
+        return new Mutation(Type.HEARTBEAT, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    void applyTo(CollectionManager collectionManager) {
+        switch (type) {
+            case RESET:
+                collectionManager.setPersonTreeSet(new TreeSet<>(persons));
+                break;
+            case PUT:
+                collectionManager.addPerson(person);
+                break;
+            case REMOVE:
+                collectionManager.removePerson(person); // The set is ordered by height, so the copy finds the original
+                break;
+            case CLEAR:
+                collectionManager.clear();
+                break;
+            case HEARTBEAT:
+                break;
+            default:
+                throw new IllegalStateException("Unknown mutation type: " + type);
+        }
+    }
+}
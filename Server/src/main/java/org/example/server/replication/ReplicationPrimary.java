@@ -0,0 +1,195 @@
+package org.example.server.replication;
+
+import org.example.common.data.Person;
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.server.manager.CollectionManager;
+import org.example.server.manager.MutationListener;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/* Accepts replicas on a TCP port and streams the collection to them.
+ Each replica gets a snapshot followed by every mutation, in order, over its own connection.
+ TCP already gives ordered, reliable delivery, so there are no sequence numbers: a replica that loses the
+ connection simply reconnects and starts over from a fresh snapshot.
+ Mutations are queued per replica by the CollectionManager (under its write lock) and written by one sender thread
+ per replica, so a slow replica never slows down the commands. If a replica falls too far behind it is disconnected.
+ The port has no authentication: it listens on the loopback interface unless given another address, and takes at
+ most maxReplicas connections, so that a stranger reaching it can neither read the collection nor pile up threads.
+ */
+public class ReplicationPrimary implements AutoCloseable {
+    private static final Logger LOG = Log.getLogger(ReplicationPrimary.class);
+    private static final int MAX_BACKLOG = 100_000; // Mutations queued for one replica before it is dropped
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int RESET_INTERVAL = 1024; // Objects between ObjectOutputStream resets, bounds its handle table
+    public static final int DEFAULT_MAX_REPLICAS = 4;
+
+    private final InetAddress bindAddress;
+    private final int port;
+    private final int maxReplicas;
+    private final CollectionManager collectionManager;
+    private final Set<ReplicaLink> replicas = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationPrimary(int port, CollectionManager collectionManager) {
+        this(InetAddress.getLoopbackAddress(), port, DEFAULT_MAX_REPLICAS, collectionManager);
+    }
+
+    public ReplicationPrimary(InetAddress bindAddress, int port, int maxReplicas, CollectionManager collectionManager) {
+        if (maxReplicas < 1) {
+            throw new IllegalArgumentException("At least one replica must be allowed.");
+        }
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxReplicas = maxReplicas;
+        this.collectionManager = collectionManager;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "replication-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        LOG.info("Accepting up to {} replicas on TCP {}:{}", maxReplicas, bindAddress.getHostAddress(), port);
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (replicas.size() >= maxReplicas) {
+                    LOG.warn("Refusing replica {}: {} replicas are already connected", socket.getRemoteSocketAddress(), maxReplicas);
+                    socket.close();
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                ReplicaLink link = new ReplicaLink(socket);
+                replicas.add(link); // Here, not in the sender thread, so the limit counts it at once
+                Thread sender = new Thread(link, "replication-sender-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error("Error accepting replica: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            LOG.warn("Error closing replication socket: {}", e.getMessage());
+        }
+        replicas.forEach(ReplicaLink::close);
+    }
+
+    // The connection to one replica and the mutations still waiting to be sent to it
+    private final class ReplicaLink implements MutationListener, Runnable {
+        private final Socket socket;
+        private final BlockingQueue<Mutation> backlog = new LinkedBlockingQueue<>(MAX_BACKLOG);
+        private volatile boolean overflowed;
+
+        private ReplicaLink(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void onPut(Person person) {
+            enqueue(Mutation.put(person));
+        }
+
+        @Override
+        public void onRemove(Person person) {
+            enqueue(Mutation.remove(person));
+        }
+
+        @Override
+        public void onClear() {
+            enqueue(Mutation.clear());
+        }
+
+        @Override
+        public void onReset(List<Person> persons) {
+            enqueue(Mutation.reset(persons));
+        }
+
+        // Runs under the collection's write lock: never blocks
+        private void enqueue(Mutation mutation) {
+            if (!backlog.offer(mutation)) {
+                overflowed = true;
+            }
+        }
+
+        @Override
+        public void run() {
+            String replica = String.valueOf(socket.getRemoteSocketAddress());
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                List<Person> snapshot = collectionManager.snapshotAndListen(this);
+                out.writeObject(Mutation.reset(snapshot));
+                out.flush();
+                LOG.info("Replica {} connected, sent {} persons", replica, snapshot.size());
+
+                int sinceReset = 0;
+                while (running) {
+                    Mutation mutation = backlog.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (overflowed) {
+                        LOG.warn("Replica {} fell more than {} mutations behind, disconnecting it", replica, MAX_BACKLOG);
+                        return;
+                    }
+                    out.writeObject(mutation != null ? mutation : Mutation.heartbeat());
+                    if (++sinceReset >= RESET_INTERVAL) {
+                        out.reset();
+                        sinceReset = 0;
+                    }
+                    if (backlog.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warn("Lost replica {}: {}", replica, e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                collectionManager.removeListener(this);
+                replicas.remove(this);
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing replica socket: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.server.replication;
+
+import org.example.common.log.Log;
+import org.example.common.log.Logger;
+import org.example.server.manager.CollectionManager;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the local collection a copy of the primary's. Connects to the primary's replication port, replaces the
+// collection with the snapshot it receives and then applies the mutations as they arrive.
+// If the primary goes quiet (no heartbeat) or the connection breaks, it reconnects and resynchronizes.
+public class ReplicationReplica implements AutoCloseable {
+    private static final Logger LOG = Log.getLogger(ReplicationReplica.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000; // Several missed heartbeats
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    // Only the classes a Mutation is made of may be deserialized from the stream
+    private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+            "org.example.**;java.lang.*;java.util.*;java.time.*;maxdepth=20;!*");
+
+    private final InetSocketAddress primary;
+    private final CollectionManager collectionManager;
+    private final AtomicLong applied = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+
+    public ReplicationReplica(String host, int port, CollectionManager collectionManager) {
+        this.primary = new InetSocketAddress(host, port);
+        this.collectionManager = collectionManager;
+    }
+
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "replication-replica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getAppliedMutations() {
+        return applied.get();
+    }
+
+    private void run() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(primary, CONNECT_TIMEOUT_MILLIS);
+                connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(connection.getInputStream()));
+                in.setObjectInputFilter(FILTER);
+                connected = true;
+                LOG.info("Connected to primary {}", primary);
+                while (running) {
+                    Mutation mutation = (Mutation) in.readObject();
+                    mutation.applyTo(collectionManager);
+                    if (mutation.getType() != Mutation.Type.HEARTBEAT) {
+                        applied.incrementAndGet();
+                    }
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                if (running) {
+                    LOG.warn("Lost connection to primary {}: {}. Reconnecting in {} ms", primary, e.getMessage(),
+                            RECONNECT_DELAY_MILLIS);
+                }
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing replication socket: {}", e.getMessage());
+            }
+        }
+    }
+}
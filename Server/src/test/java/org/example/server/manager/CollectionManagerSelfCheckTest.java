@@ -0,0 +1,91 @@
+package org.example.server.manager;
+
+import org.example.common.data.Coordinates;
+import org.example.common.data.Country;
+import org.example.common.data.EyeColor;
+import org.example.common.data.HairColor;
+import org.example.common.data.Location;
+import org.example.common.data.Person;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Runs every kind of mutation with the self-check on: the incrementally kept aggregates and the id index
+// must agree with a full recount after each of them.
+class CollectionManagerSelfCheckTest {
+
+    @Test
+    void randomMutationsKeepTheAggregatesConsistent() {
+        Random random = new Random(7);
+        CollectionManager manager = new CollectionManager();
+        manager.setSelfCheck(true);
+        List<Integer> ids = new ArrayList<>();
+        for (int step = 0; step < 5_000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 5 || ids.isEmpty()) {
+                Person person = person(0, random);
+                if (manager.addPerson(person)) {
+                    ids.add(person.getId());
+                }
+            } else if (operation == 5) {
+                Person person = person(0, random);
+                if (manager.addPersonIfMax(person)) {
+                    ids.add(person.getId());
+                }
+            } else if (operation == 6) {
+                Person removed = manager.getById(ids.remove(random.nextInt(ids.size())));
+                manager.removePerson(removed);
+            } else if (operation == 7) {
+                // The holder of the highest id, so that the next one has to be looked up
+                Person max = manager.getMaxById();
+                manager.removePerson(max);
+                ids.remove(max.getId());
+            } else if (operation == 8) {
+                manager.updatePerson(ids.get(random.nextInt(ids.size())), person(0, random));
+            } else if (random.nextInt(20) == 0) {
+                for (Person removed : manager.removeLower(person(0, random))) {
+                    ids.remove(removed.getId());
+                }
+            }
+            assertEquals(ids.size(), manager.getElementCount());
+        }
+        manager.clear();
+        assertNull(manager.getMaxById());
+        manager.addPerson(person(0, random));
+
+        assertEquals(0, manager.getSelfCheckFailures());
+        manager.verifyAggregates();
+    }
+
+    @Test
+    void explicitIdsBelowAndAboveTheSequence() {
+        CollectionManager manager = new CollectionManager();
+        manager.setSelfCheck(true);
+        Random random = new Random(11);
+        for (int id : new int[]{1_000, 5, 999, 1_001, 3}) {
+            manager.addPerson(person(id, random));
+        }
+        assertEquals(1_001, manager.getMaxById().getId());
+        manager.removePerson(manager.getById(1_001));
+        assertEquals(1_000, manager.getMaxById().getId());
+        manager.removePerson(manager.getById(1_000));
+        assertEquals(999, manager.getMaxById().getId());
+        manager.removePerson(manager.getById(999));
+        assertEquals(5, manager.getMaxById().getId()); // Too far below for the probe, found by the scan
+
+        assertEquals(0, manager.getSelfCheckFailures());
+        manager.verifyAggregates();
+    }
+
+    // Heights are drawn from a wide range so that they are practically unique: the set orders by height
+    private static Person person(int id, Random random) {
+        return new Person(id, "person", new Coordinates(1, 2.0), LocalDateTime.now(), 1 + random.nextDouble() * 1e6,
+                EyeColor.RED, HairColor.BLUE, Country.JAPAN, new Location(1f, 2f, "location"));
+    }
+}
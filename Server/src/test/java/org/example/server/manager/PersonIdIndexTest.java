@@ -0,0 +1,151 @@
+package org.example.server.manager;
+
+import org.example.common.data.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks the open-addressing index against a HashMap doing the same puts and removes.
+class PersonIdIndexTest {
+    private static final int INITIAL_CAPACITY = 64; // As in PersonIdIndex
+
+    @Test
+    void randomPutsAndRemovesMatchHashMap() {
+        Random random = new Random(42);
+        PersonIdIndex index = new PersonIdIndex();
+        Map<Integer, Person> oracle = new HashMap<>();
+        // A small id range makes collisions, long probe runs and removals inside them frequent
+        for (int step = 0; step < 200_000; step++) {
+            int id = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertSame(oracle.remove(id), index.remove(id), "remove " + id);
+            } else {
+                Person person = person(id);
+                assertSame(oracle.put(id, person), index.put(id, person), "put " + id);
+            }
+            if (step % 1_000 == 0) {
+                assertMatches(oracle, index);
+            }
+        }
+        assertMatches(oracle, index);
+    }
+
+    @Test
+    void removalWrapsAroundTheEndOfTheTable() {
+        List<Integer> lastSlot = idsWithHomeSlot(INITIAL_CAPACITY - 1, 4); // Spill over into slots 0, 1 and 2
+        List<Integer> firstSlot = idsWithHomeSlot(0, 2);
+        PersonIdIndex index = new PersonIdIndex();
+        Map<Integer, Person> oracle = new HashMap<>();
+        for (int id : lastSlot) {
+            put(index, oracle, id);
+        }
+        for (int id : firstSlot) {
+            put(index, oracle, id);
+        }
+        assertMatches(oracle, index);
+
+        // Removing the entry in the last slot must move the wrapped ones back across the table end,
+        // but leave the ones at home in slot 0 findable
+        for (int id : lastSlot) {
+            assertSame(oracle.remove(id), index.remove(id));
+            assertMatches(oracle, index);
+        }
+        for (int id : firstSlot) {
+            assertSame(oracle.remove(id), index.remove(id));
+            assertMatches(oracle, index);
+        }
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void removalOfWrappedEntriesKeepsTheOthersFindable() {
+        List<Integer> lastSlot = idsWithHomeSlot(INITIAL_CAPACITY - 1, 3);
+        List<Integer> firstSlot = idsWithHomeSlot(0, 3);
+        PersonIdIndex index = new PersonIdIndex();
+        Map<Integer, Person> oracle = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            put(index, oracle, lastSlot.get(i));
+            put(index, oracle, firstSlot.get(i));
+        }
+        // Take them out from the middle of the run first
+        for (int id : List.of(firstSlot.get(0), lastSlot.get(1), firstSlot.get(2), lastSlot.get(0))) {
+            assertSame(oracle.remove(id), index.remove(id));
+            assertMatches(oracle, index);
+        }
+    }
+
+    @Test
+    void rehashKeepsEveryEntry() {
+        PersonIdIndex index = new PersonIdIndex();
+        Map<Integer, Person> oracle = new HashMap<>();
+        for (int id = 1; id <= 10_000; id++) {
+            put(index, oracle, id);
+        }
+        put(index, oracle, Integer.MIN_VALUE);
+        put(index, oracle, Integer.MAX_VALUE);
+        put(index, oracle, 0);
+        assertMatches(oracle, index);
+
+        for (int id = 1; id <= 10_000; id += 2) {
+            assertSame(oracle.remove(id), index.remove(id));
+        }
+        assertMatches(oracle, index);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.containsKey(2));
+        put(index, new HashMap<>(), 2);
+        assertTrue(index.containsKey(2));
+    }
+
+    @Test
+    void missingIdsAreNotFound() {
+        PersonIdIndex index = new PersonIdIndex();
+        assertNull(index.get(0));
+        assertNull(index.remove(7));
+        index.put(7, person(7));
+        assertNull(index.get(8));
+        assertNull(index.remove(8));
+        assertEquals(1, index.size());
+    }
+
+    private static void put(PersonIdIndex index, Map<Integer, Person> oracle, int id) {
+        Person person = person(id);
+        assertSame(oracle.put(id, person), index.put(id, person), "put " + id);
+    }
+
+    private static void assertMatches(Map<Integer, Person> oracle, PersonIdIndex index) {
+        assertEquals(oracle.size(), index.size());
+        for (Map.Entry<Integer, Person> entry : oracle.entrySet()) {
+            assertSame(entry.getValue(), index.get(entry.getKey()), "get " + entry.getKey());
+        }
+    }
+
+    // Ids whose home slot in a table of the initial capacity is 'slot', found with the index's hash function
+    private static List<Integer> idsWithHomeSlot(int slot, int count) {
+        int shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; ids.size() < count; id++) {
+            if ((id * 0x9E3779B9) >>> shift == slot) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static Person person(int id) {
+        Person person = new Person();
+        person.setId(id);
+        return person;
+    }
+}